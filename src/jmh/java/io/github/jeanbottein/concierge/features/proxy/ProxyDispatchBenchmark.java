@@ -0,0 +1,61 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of resolving the proxy of a request on the ingress route, which should not depend on
+ * how many proxies are configured. Requests cycle over every proxy so lookups are not all
+ * answered from the same slot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProxyDispatchBenchmark {
+
+    @Param({"2", "20", "200", "2000"})
+    public int proxies;
+
+    private ProxyRouteTable routeTable;
+    private String[] requestUris;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        routeTable = new ProxyRouteTable(IntStream.range(0, proxies)
+            .mapToObj(i -> new ProxyRoute("service" + i, "http://localhost:8090",
+                "http://localhost:8090?bridgeEndpoint=true", false, null))
+            .toList());
+        requestUris = IntStream.range(0, proxies)
+            .mapToObj(i -> "/proxy/service" + i + "/users/42/posts")
+            .toArray(String[]::new);
+    }
+
+    @Benchmark
+    public ProxyRoute resolve() {
+        var requestUri = requestUris[next++ % requestUris.length];
+        return routeTable.resolve(requestUri);
+    }
+
+    @Benchmark
+    public void resolveAndStripPrefix(Blackhole blackhole) {
+        var requestUri = requestUris[next++ % requestUris.length];
+        var proxyRoute = routeTable.resolve(requestUri);
+        blackhole.consume(ProxyRouteTable.remainingPath(requestUri, proxyRoute));
+    }
+
+    @Benchmark
+    public ProxyRoute unknownProxy() {
+        return routeTable.resolve("/proxy/unknown/users/42/posts");
+    }
+}
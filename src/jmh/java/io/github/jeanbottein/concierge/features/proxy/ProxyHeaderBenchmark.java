@@ -0,0 +1,121 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.http.base.HttpHeaderFilterStrategy;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.spi.HeaderFilterStrategy;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig.HeadersConfig;
+
+/**
+ * Cost of the header rewriting done on every proxied request. Each invocation starts from
+ * a fresh exchange carrying the headers a typical client and platform-http put on it, so the
+ * allocation of the rewriting itself is the difference with baseline under the gc profiler:
+ * ./gradlew jmh -PjmhIncludes=ProxyHeaderBenchmark -PjmhProfilers=gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProxyHeaderBenchmark {
+
+    private static final Map<String, Object> REQUEST_HEADERS = Map.ofEntries(
+        Map.entry(Exchange.HTTP_URI, "/proxy/serviceA/todos/1"),
+        Map.entry(Exchange.HTTP_URL, "http://localhost:8081/proxy/serviceA/todos/1"),
+        Map.entry(Exchange.HTTP_METHOD, "GET"),
+        Map.entry(Exchange.HTTP_PATH, "/todos/1"),
+        Map.entry(Exchange.HTTP_RAW_QUERY, "userId=1"),
+        Map.entry(Exchange.HTTP_QUERY, "userId=1"),
+        Map.entry("Host", "localhost:8081"),
+        Map.entry("User-Agent", "curl/8.5.0"),
+        Map.entry("Accept", "application/json"),
+        Map.entry("Accept-Encoding", "gzip, deflate, br"),
+        Map.entry("Connection", "keep-alive, X-Debug-Trace"),
+        Map.entry("X-Debug-Trace", "1"),
+        Map.entry("Cookie", "session=2f1c9a"),
+        Map.entry("Content-Length", "0"),
+        Map.entry("X-Request-Id", "5f0c2a4e-7d8b-4a7e-9a55-3f7b1c2d9e10"));
+
+    private static final ProxyRoute PROXY_ROUTE =
+        new ProxyRoute("serviceA", "http://localhost:8090", "http://localhost:8090?bridgeEndpoint=true", false, null);
+    private static final ProxyRoute FILTERING_PROXY_ROUTE = new ProxyRoute("serviceA", "http://localhost:8090",
+        "http://localhost:8090?bridgeEndpoint=true", false, null, false, Map.of(), Map.of(), HeaderPolicy.of(filteringHeaders(), true));
+
+    private final HeaderFilterStrategy filterStrategy = new HttpHeaderFilterStrategy();
+    private CamelContext camelContext;
+
+    @Setup
+    public void setUp() {
+        camelContext = new DefaultCamelContext();
+        camelContext.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        camelContext.stop();
+    }
+
+    private static HeadersConfig filteringHeaders() {
+        var headers = new HeadersConfig();
+        headers.setDeny(List.of("Cookie"));
+        headers.getInject().put("X-Proxy-Name", "serviceA");
+        return headers;
+    }
+
+    private Exchange requestExchange() {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setHeaders(new HashMap<>(REQUEST_HEADERS));
+        exchange.setProperty(ProxyRoute.PROPERTY, PROXY_ROUTE);
+        return exchange;
+    }
+
+    @Benchmark
+    public Exchange baseline() {
+        return requestExchange();
+    }
+
+    @Benchmark
+    public Exchange preserveHeaders() {
+        var exchange = requestExchange();
+        ProxyRouter.preserveHeaders(exchange);
+        return exchange;
+    }
+
+    @Benchmark
+    public Exchange filteringHeaderPolicy() {
+        var exchange = requestExchange();
+        exchange.setProperty(ProxyRoute.PROPERTY, FILTERING_PROXY_ROUTE);
+        ProxyRouter.preserveHeaders(exchange);
+        return exchange;
+    }
+
+    // The pattern-matching removal the header policy replaced, for comparison
+    @Benchmark
+    public Exchange removeCamelHeaders() {
+        var exchange = requestExchange();
+        exchange.getIn().removeHeaders("Camel*", Exchange.HTTP_METHOD);
+        return exchange;
+    }
+
+    @Benchmark
+    public void filterOutgoingHeaders(Blackhole blackhole) {
+        var exchange = requestExchange();
+        exchange.getIn().getHeaders().forEach((name, value) ->
+            blackhole.consume(filterStrategy.applyFilterToCamelHeaders(name, value, exchange)));
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of resolving the proxied path and query from the incoming request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProxyPathBenchmark {
+
+    private static final ProxyRoute PROXY_ROUTE =
+        new ProxyRoute("serviceA", "http://localhost:8090", "http://localhost:8090?bridgeEndpoint=true", false, null);
+
+    @Param({"/proxy/serviceA/todos/1", "/proxy/serviceA/users/42/posts/7/comments"})
+    public String requestUri;
+
+    @Param({"", "userId=1&id=2"})
+    public String rawQuery;
+
+    private CamelContext camelContext;
+
+    @Setup
+    public void setUp() {
+        camelContext = new DefaultCamelContext();
+        camelContext.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        camelContext.stop();
+    }
+
+    @Benchmark
+    public String remainingPath() {
+        return ProxyRouteTable.remainingPath(requestUri, PROXY_ROUTE);
+    }
+
+    @Benchmark
+    public Exchange extractPath() {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setHeader(Exchange.HTTP_URI, requestUri);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "GET");
+        exchange.getIn().setHeader(Exchange.HTTP_RAW_QUERY, rawQuery);
+        exchange.setProperty(ProxyRoute.PROPERTY, PROXY_ROUTE);
+        ProxyRouter.extractPath(exchange);
+        return exchange;
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.jeanbottein.concierge.ConciergeApplication;
+
+/**
+ * Full round trip through a running Concierge instance to an in-process stub backend.
+ * The stub answers instantly with a body of the requested size, so the numbers are
+ * the proxy's own overhead plus loopback I/O. Caching is off for the benchmark proxy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProxyRoundTripBenchmark {
+
+    @Param({"256", "262144"})
+    public int bodySize;
+
+    private HttpServer backend;
+    private ConfigurableApplicationContext application;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        var body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'x');
+
+        backend = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        backend.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        backend.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        backend.start();
+
+        application = SpringApplication.run(ConciergeApplication.class,
+            "--server.port=0",
+            "--logging.level.root=WARN",
+            "--logging.level.concierge.access=OFF",
+            "--concierge.proxies.bench.target=http://localhost:" + backend.getAddress().getPort(),
+            "--concierge.proxies.bench.connection-pool.max-per-route=200");
+
+        var port = application.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/proxy/bench/items/1?id=1")).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+        backend.stop(0);
+    }
+
+    private byte[] roundTrip() throws IOException, InterruptedException {
+        var response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Proxy answered " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] sequential() throws IOException, InterruptedException {
+        return roundTrip();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public byte[] concurrent16() throws IOException, InterruptedException {
+        return roundTrip();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public byte[] concurrent64() throws IOException, InterruptedException {
+        return roundTrip();
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.jeanbottein.concierge.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Allocated bytes and GC pauses of this JVM between two snapshots. Concurrent GC cycles run
+ * alongside the application and are not counted as pauses.
+ */
+final class JvmMonitor {
+
+    record Snapshot(long allocatedBytes, long pauses, long pauseMillis, long maxPauseMillis, long nanoTime) {}
+
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final AtomicLong pauses = new AtomicLong();
+    private final AtomicLong pauseMillis = new AtomicLong();
+    private final AtomicLong maxPauseMillis = new AtomicLong();
+
+    JvmMonitor() {
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().toLowerCase(Locale.ROOT).contains("concurrent")
+                    || info.getGcAction().toLowerCase(Locale.ROOT).contains("concurrent")) {
+                return;
+            }
+            var duration = info.getGcInfo().getDuration();
+            pauses.incrementAndGet();
+            pauseMillis.addAndGet(duration);
+            maxPauseMillis.accumulateAndGet(duration, Math::max);
+        };
+        for (var collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+        }
+    }
+
+    /**
+     * Takes a snapshot and starts a new maximum pause
+     */
+    Snapshot snapshot() {
+        return new Snapshot(threads.getTotalThreadAllocatedBytes(), pauses.get(), pauseMillis.get(),
+            maxPauseMillis.getAndSet(0), System.nanoTime());
+    }
+
+    /**
+     * Allocation rate in MB/s, pause count, total and longest pause between two snapshots
+     */
+    static String[] describe(Snapshot before, Snapshot after) {
+        var seconds = (after.nanoTime() - before.nanoTime()) / 1e9;
+        var allocationRate = (after.allocatedBytes() - before.allocatedBytes()) / seconds / (1024 * 1024);
+        return new String[] {
+            String.format(Locale.ROOT, "%.1f", allocationRate),
+            String.valueOf(after.pauses() - before.pauses()),
+            String.valueOf(after.pauseMillis() - before.pauseMillis()),
+            String.valueOf(after.maxPauseMillis())
+        };
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.jeanbottein.concierge.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+
+import io.github.jeanbottein.concierge.ConciergeApplication;
+
+/**
+ * Offline load test of the proxy, run with ./gradlew loadTest. A Concierge instance is started
+ * in-process with one proxy per scenario, all in front of the same {@link StubBackend}, and each
+ * scenario is driven by an {@link OpenLoadGenerator} at every configured rate and payload size.
+ *
+ * Settings are read from loadtest.* system properties, see the defaults below. Allocation rate and
+ * GC pauses are those of the whole JVM, generator and stub included: the direct scenario, which
+ * calls the stub without the proxy, is the baseline to subtract.
+ */
+public final class LoadTest {
+
+    private static final List<String> SCENARIOS = List.of("direct", "uncached", "cached", "streaming");
+    private static final String HEADER = "| Scenario | Payload (B) | Rate (req/s) | Throughput (req/s) | p50 (ms) | p90 (ms) | p99 (ms) "
+        + "| p99.9 (ms) | Max (ms) | Failed | Dropped | Peak in flight | Alloc (MB/s) | GC pauses | Pause total (ms) | Pause max (ms) |";
+
+    private record Row(String scenario, int payload, int rate, OpenLoadGenerator.Result result, String[] jvm) {}
+
+    public static void main(String[] args) throws IOException {
+        var scenarios = list("scenarios", String.join(",", SCENARIOS));
+        var rates = list("rates", "500,2000").stream().map(Integer::parseInt).toList();
+        var payloads = list("payloads", "1024,65536").stream().map(Integer::parseInt).toList();
+        var warmup = duration("warmup", "5s");
+        var duration = duration("duration", "20s");
+        var reportDirectory = Path.of(System.getProperty("loadtest.reportDir", "build/reports/loadtest"));
+        for (var scenario : scenarios) {
+            if (!SCENARIOS.contains(scenario)) {
+                throw new IllegalArgumentException("Unknown scenario " + scenario + ", expected one of " + SCENARIOS);
+            }
+        }
+
+        var monitor = new JvmMonitor();
+        var generator = new OpenLoadGenerator(Integer.getInteger("loadtest.maxInFlight", 10_000));
+        var rows = new ArrayList<Row>();
+        try (var backend = new StubBackend(duration("latency", "5ms"), duration("jitter", "2ms"));
+             var application = SpringApplication.run(ConciergeApplication.class, applicationArgs(backend.port()))) {
+            var proxyPort = application.getEnvironment().getProperty("local.server.port");
+            for (var scenario : scenarios) {
+                for (var payload : payloads) {
+                    var uri = URI.create(scenario.equals("direct")
+                        ? "http://localhost:" + backend.port() + "/items?size=" + payload
+                        : "http://localhost:" + proxyPort + "/proxy/" + scenario + "/items?size=" + payload);
+                    for (var rate : rates) {
+                        System.out.printf(Locale.ROOT, "%s, %d B payload, %d req/s: warming up for %s%n", scenario, payload, rate, warmup);
+                        generator.run(uri, rate, warmup);
+                        System.gc();
+                        var before = monitor.snapshot();
+                        var result = generator.run(uri, rate, duration);
+                        var row = new Row(scenario, payload, rate, result, JvmMonitor.describe(before, monitor.snapshot()));
+                        rows.add(row);
+                        System.out.println(format(row));
+                    }
+                }
+            }
+        }
+        writeReport(reportDirectory, rows, duration);
+    }
+
+    private static String[] applicationArgs(int backendPort) {
+        var target = "http://localhost:" + backendPort;
+        return new String[] {
+            "--server.port=0",
+            "--logging.level.root=WARN",
+            "--logging.level.concierge.access=OFF",
+            "--concierge.proxies.uncached.target=" + target,
+            "--concierge.proxies.uncached.connection-pool.max-per-route=1000",
+            "--concierge.proxies.cached.target=" + target,
+            "--concierge.proxies.cached.caching.enabled=true",
+            "--concierge.proxies.cached.caching.ttl=1h",
+            "--concierge.proxies.cached.connection-pool.max-per-route=1000",
+            "--concierge.proxies.streaming.target=" + target,
+            "--concierge.proxies.streaming.streaming=true",
+            "--concierge.proxies.streaming.connection-pool.max-per-route=1000"
+        };
+    }
+
+    private static String format(Row row) {
+        var result = row.result();
+        var latencies = result.latencies();
+        return String.format(Locale.ROOT, "| %s | %d | %d | %.0f | %s | %s | %s | %s | %s | %d | %d | %d | %s | %s | %s | %s |",
+            row.scenario(), row.payload(), row.rate(), result.throughput(),
+            millis(latencies, 50), millis(latencies, 90), millis(latencies, 99), millis(latencies, 99.9),
+            String.format(Locale.ROOT, "%.2f", latencies.getMaxValue() / 1000.0),
+            result.failed(), result.dropped(), result.peakInFlight(),
+            row.jvm()[0], row.jvm()[1], row.jvm()[2], row.jvm()[3]);
+    }
+
+    private static String millis(Histogram latencies, double percentile) {
+        return String.format(Locale.ROOT, "%.2f", latencies.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    /**
+     * Writes the summary table as Markdown, and the full latency distribution of each run as an
+     * .hgrm file that HdrHistogram's plotter reads
+     */
+    private static void writeReport(Path directory, List<Row> rows, Duration duration) throws IOException {
+        Files.createDirectories(directory);
+        var report = new StringBuilder()
+            .append("# Concierge load test\n\n")
+            .append("Open model, ").append(duration.toSeconds()).append("s per run. ")
+            .append("Latency is measured from the time each request was due. ")
+            .append("Allocation and GC figures cover the whole JVM; compare with the direct scenario.\n\n")
+            .append(HEADER).append('\n')
+            .append("|---".repeat(HEADER.split("\\|").length - 1)).append("|\n");
+        for (var row : rows) {
+            report.append(format(row)).append('\n');
+            var histogram = directory.resolve(row.scenario() + "-" + row.payload() + "B-" + row.rate() + "rps.hgrm");
+            try (var out = new PrintStream(Files.newOutputStream(histogram))) {
+                row.result().latencies().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        var summary = directory.resolve("report.md");
+        Files.writeString(summary, report);
+        System.out.println("Report written to " + summary.toAbsolutePath());
+    }
+
+    private static List<String> list(String name, String defaultValue) {
+        return Arrays.stream(System.getProperty("loadtest." + name, defaultValue).split(","))
+            .map(String::trim)
+            .filter(value -> !value.isEmpty())
+            .toList();
+    }
+
+    private static Duration duration(String name, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty("loadtest." + name, defaultValue));
+    }
+}
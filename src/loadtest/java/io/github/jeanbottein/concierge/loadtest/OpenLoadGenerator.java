@@ -0,0 +1,92 @@
+package io.github.jeanbottein.concierge.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Sends requests at a fixed arrival rate, whether or not earlier ones have answered (an open
+ * model). Latency is measured from the time a request was due rather than the time it was sent,
+ * so a stalled proxy shows up in the percentiles instead of slowing the generator down.
+ */
+final class OpenLoadGenerator {
+
+    record Result(Histogram latencies, long sent, long succeeded, long failed, long dropped, int peakInFlight,
+                  Duration elapsed) {
+
+        double throughput() {
+            return succeeded * 1e9 / elapsed.toNanos();
+        }
+    }
+
+    private final HttpClient client;
+    // Requests due while this many are still in flight are dropped and counted, rather than queued
+    private final int maxInFlight;
+
+    OpenLoadGenerator(int maxInFlight) {
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        this.maxInFlight = maxInFlight;
+    }
+
+    Result run(URI uri, int rate, Duration duration) {
+        var request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(10)).GET().build();
+        var recorder = new Recorder(TimeUnit.SECONDS.toMicros(10), 3);
+        var succeeded = new AtomicLong();
+        var failed = new AtomicLong();
+        var dropped = 0L;
+        var inFlight = new AtomicInteger();
+        var peakInFlight = new AtomicInteger();
+
+        var total = rate * duration.toNanos() / TimeUnit.SECONDS.toNanos(1);
+        var intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+        var start = System.nanoTime();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                var due = start + (long) (i * intervalNanos);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                var current = inFlight.incrementAndGet();
+                if (current > maxInFlight) {
+                    inFlight.decrementAndGet();
+                    dropped++;
+                    continue;
+                }
+                peakInFlight.accumulateAndGet(current, Math::max);
+                executor.submit(() -> {
+                    try {
+                        var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        (response.statusCode() / 100 == 2 ? succeeded : failed).incrementAndGet();
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failed.incrementAndGet();
+                    } finally {
+                        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due),
+                            TimeUnit.SECONDS.toMicros(10)));
+                        inFlight.decrementAndGet();
+                    }
+                });
+            }
+        }
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return new Result(recorder.getIntervalHistogram(), total - dropped, succeeded.get(), failed.get(), dropped,
+            peakInFlight.get(), elapsed);
+    }
+}
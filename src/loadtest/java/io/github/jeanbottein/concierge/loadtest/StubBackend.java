@@ -0,0 +1,81 @@
+package io.github.jeanbottein.concierge.loadtest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process backend answering every request after a latency drawn uniformly within
+ * latency ± jitter, with a body of the size given by the size query parameter.
+ */
+final class StubBackend implements AutoCloseable {
+
+    private final HttpServer server;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final ConcurrentHashMap<Integer, byte[]> bodies = new ConcurrentHashMap<>();
+
+    StubBackend(Duration latency, Duration jitter) throws IOException {
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        // Each request sleeps on its own virtual thread, so latency does not cap throughput
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::answer);
+        server.start();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        var delay = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(-jitterNanos, jitterNanos + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(Duration.ofNanos(delay));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        var body = bodies.computeIfAbsent(size(exchange.getRequestURI().getRawQuery()), StubBackend::body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static int size(String query) {
+        if (query != null) {
+            for (var parameter : query.split("&")) {
+                if (parameter.startsWith("size=")) {
+                    return Integer.parseInt(parameter.substring("size=".length()));
+                }
+            }
+        }
+        return 256;
+    }
+
+    // A JSON string of the given size
+    private static byte[] body(int size) {
+        var body = new byte[Math.max(size, 2)];
+        Arrays.fill(body, (byte) 'x');
+        body[0] = '"';
+        body[body.length - 1] = '"';
+        return body;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
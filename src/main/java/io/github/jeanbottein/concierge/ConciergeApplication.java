@@ -3,11 +3,15 @@ package io.github.jeanbottein.concierge;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.modulith.Modulith;
 
+import io.github.jeanbottein.concierge.app.config.NativeRuntimeHints;
+
 @SpringBootApplication
 @EnableCaching
 @Modulith
+@ImportRuntimeHints(NativeRuntimeHints.class)
 public class ConciergeApplication {
 
 	public static void main(String[] args) {
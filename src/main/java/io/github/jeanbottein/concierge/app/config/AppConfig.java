@@ -8,6 +8,7 @@ import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import lombok.Data;
 
@@ -20,16 +21,103 @@ public class AppConfig {
     
     private Map<String, ProxyConfig> proxies = new HashMap<>();
     
+    // Access log entries waiting to be written; entries beyond this are dropped
+    private int accessLogBufferSize = 8192;
+    
+    // How long exchanges on proxy routes replaced by a configuration reload get to finish
+    private Duration reloadDrainTimeout = Duration.ofSeconds(30);
+    
+    @NestedConfigurationProperty
+    private CacheSnapshotConfig cacheSnapshot = new CacheSnapshotConfig();
+    
     @Data
     public static class ProxyConfig {
         private boolean enabled = true;
         private String target;
+        // Several instances of the backend, balanced by latency; replaces target when set
+        private List<TargetConfig> targets = emptyList();
+        // Pipe bodies between client and backend instead of buffering them in the exchange
+        private boolean streaming = false;
+        // Share of exchanges written to the access log, from 0 (none) to 1 (all)
+        private double accessLogSampleRate = 1.0;
         
         @NestedConfigurationProperty
         private CachingConfig caching = new CachingConfig();
         
         @NestedConfigurationProperty
         private ResilienceConfig resilience = new ResilienceConfig();
+        
+        @NestedConfigurationProperty
+        private ConcurrencyConfig concurrency = new ConcurrencyConfig();
+        
+        @NestedConfigurationProperty
+        private RateLimitConfig rateLimit = new RateLimitConfig();
+        
+        @NestedConfigurationProperty
+        private ConnectionPoolConfig connectionPool = new ConnectionPoolConfig();
+        
+        @NestedConfigurationProperty
+        private CompressionConfig compression = new CompressionConfig();
+        
+        @NestedConfigurationProperty
+        private SoapConfig soap = new SoapConfig();
+        
+        @NestedConfigurationProperty
+        private LoadBalancingConfig loadBalancing = new LoadBalancingConfig();
+        
+        @NestedConfigurationProperty
+        private HedgingConfig hedging = new HedgingConfig();
+        
+        @NestedConfigurationProperty
+        private HeadersConfig headers = new HeadersConfig();
+        
+        /**
+         * The target used when the proxy has no targets list, or the first of the list
+         */
+        public String primaryTarget() {
+            return targets.isEmpty() ? target : targets.get(0).getUrl();
+        }
+    }
+    
+    @Data
+    public static class TargetConfig {
+        private String url;
+        // Relative share of requests, among targets of similar latency
+        private int weight = 1;
+    }
+    
+    @Data
+    public static class LoadBalancingConfig {
+        // A target failing at least this share of a window of requests is ejected
+        private double ejectionErrorRate = 0.5;
+        private int ejectionWindow = 20;
+        // How long an ejected target stays out when there is no health check
+        private Duration ejectionTime = Duration.ofSeconds(30);
+        // Path probed on ejected targets, they come back on the first 2xx; unset to rely on ejectionTime
+        private String healthCheckPath;
+        private Duration healthCheckInterval = Duration.ofSeconds(5);
+    }
+    
+    @Data
+    public static class HeadersConfig {
+        // Client headers forwarded to the backend, all of them when empty; hop-by-hop headers never are
+        private List<String> allow = emptyList();
+        private List<String> deny = emptyList();
+        // Added to every backend request, replacing the client's value; an empty value removes the header
+        private Map<String, String> inject = new HashMap<>(Map.of("X-Forwarded-By", "Concierge-Proxy"));
+    }
+    
+    @Data
+    public static class HedgingConfig {
+        // Send a second GET to the backend when the first one is slow, the first answer wins
+        private boolean enabled = false;
+        // Wait before hedging; unset to wait for the observed latency percentile instead
+        private Duration delay;
+        private double percentile = 0.95;
+        // Lower bound of the derived delay
+        private Duration minDelay = Duration.ofMillis(5);
+        // Share of the proxy's GETs that may be hedged
+        private double budget = 0.05;
     }
     
     @Data
@@ -37,6 +125,38 @@ public class AppConfig {
         private boolean enabled = false;
         private Duration ttl = Duration.ofSeconds(10);
         private List<String> keyFields = emptyList();
+        // Request headers whose values take part in the key. Requests carrying Authorization or
+        // Cookie are only cached when that header is listed here, so each caller gets its own entry
+        private List<String> keyHeaders = emptyList();
+        private long maxEntries = 10_000;
+        // Where cached bodies live: heap, or off-heap compressed and bounded by maxBytes
+        private CacheStorage storage = CacheStorage.HEAP;
+        private DataSize maxBytes = DataSize.ofMegabytes(64);
+        // Serve an expired entry for this long while it is refreshed in the background
+        private Duration staleWhileRevalidate = Duration.ZERO;
+        // Serve an expired entry for this long when the backend fails
+        private Duration staleIfError = Duration.ZERO;
+        // Let identical concurrent GETs share one in-flight backend call
+        private boolean coalesce = false;
+        private Duration coalesceMaxWait = Duration.ofSeconds(10);
+        // Share entries between replicas through Redis (spring.data.redis.*) behind the local cache
+        private boolean distributed = false;
+        // How long a request waits on the shared cache before going to the backend
+        private Duration distributedTimeout = Duration.ofMillis(50);
+        // Paths requested through the proxy once it is started, so they are cached before clients ask
+        private List<String> warmUpPaths = emptyList();
+    }
+    
+    public enum CacheStorage {
+        HEAP,
+        OFF_HEAP
+    }
+    
+    @Data
+    public static class CacheSnapshotConfig {
+        // Save cached responses on shutdown and load them back on startup
+        private boolean enabled = false;
+        private String path = "concierge-cache.snapshot";
     }
     
     @Data
@@ -45,6 +165,81 @@ public class AppConfig {
         private int maxAttempts = 5;
         private Duration delay = Duration.ofSeconds(1);
         private int delayFactor = 2;
+        // Circuit breaker opens when this percentage of recent calls failed
+        private float failureRateThreshold = 50;
+        private int slidingWindowSize = 20;
+        private int minimumNumberOfCalls = 10;
+        private Duration openStateDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 3;
+    }
+    
+    @Data
+    public static class ConcurrencyConfig {
+        // Maximum in-flight backend calls for the proxy, 0 means unlimited
+        private int maxConcurrent = 0;
+        private Duration maxWait = Duration.ZERO;
+        // Follow the backend's latency instead of a fixed maxConcurrent
+        private boolean adaptive = false;
+        private int initialLimit = 20;
+        private int minLimit = 5;
+        private int maxLimit = 1000;
+        // Request header carrying the priority class: critical, normal (default) or low, shed first
+        private String priorityHeader = "X-Priority";
+    }
+    
+    @Data
+    public static class RateLimitConfig {
+        // Sustained requests per second for the whole proxy, 0 means unlimited
+        private double requestsPerSecond = 0;
+        // Requests allowed at once above the sustained rate, 0 means one second worth of requests
+        private int burst = 0;
+        // Same limits applied to each client separately
+        private double clientRequestsPerSecond = 0;
+        private int clientBurst = 0;
+        // Header identifying the client (e.g. X-Api-Key), the remote address when unset or absent
+        private String clientKeyHeader;
+        // Clients tracked at most, idle ones are forgotten first
+        private long maxClients = 1_000_000;
+        private Duration clientIdleTimeout = Duration.ofMinutes(1);
+    }
+    
+    @Data
+    public static class SoapConfig {
+        // Treat requests as SOAP envelopes: keep their XML content type and read the operation from the body
+        private boolean enabled = false;
+        // Read-only operations whose responses may be cached, by local name (e.g. GetProduct)
+        private List<String> cacheableOperations = emptyList();
+        // Body elements whose values make up the cache key of those operations, by local name
+        private List<String> keyElements = emptyList();
+        // Header elements whose values also take part in the key, by local name. Envelopes with a
+        // Header are only cached when this is set, since the Header carries identity and security tokens
+        private List<String> headerKeyElements = emptyList();
+        // Operations served by another endpoint than the proxy target
+        private Map<String, String> operationTargets = new HashMap<>();
+    }
+    
+    @Data
+    public static class CompressionConfig {
+        // Negotiate response encodings at the proxy instead of letting the HTTP client decode them
+        private boolean enabled = false;
+        // Unencoded responses smaller than this are sent as they are
+        private DataSize minSize = DataSize.ofKilobytes(1);
+        // 1 (fastest) to 9 (smallest), used for gzip and deflate
+        private int level = 6;
+    }
+    
+    @Data
+    public static class ConnectionPoolConfig {
+        private int maxTotal = 200;
+        private int maxPerRoute = 20;
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofSeconds(30);
+        // How long an unused pooled connection is kept before eviction
+        private Duration idleTimeout = Duration.ofSeconds(30);
+        // Keep-alive used when the backend does not announce one
+        private Duration keepAlive = Duration.ofMinutes(1);
+        // Maximum lifetime of a connection, null means unlimited
+        private Duration timeToLive;
     }
 
 }
@@ -0,0 +1,85 @@
+package io.github.jeanbottein.concierge.app.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.boot.context.properties.bind.BindableRuntimeHintsRegistrar;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Hints for running the proxy as a GraalVM native image.
+ *
+ * Camel resolves components, languages, type converters and their generated configurers at runtime
+ * from META-INF/services/org/apache/camel descriptors and instantiates them reflectively. Proxy
+ * routes are only known once the configuration is read, so instead of listing classes by hand
+ * this walks every descriptor on the build classpath and registers the classes they name.
+ * Caffeine similarly picks its generated cache and node classes by name.
+ *
+ * Lombok needs nothing here: its accessors are plain bytecode by the time AOT processing runs.
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final String CAMEL_DESCRIPTORS = "META-INF/services/org/apache/camel/";
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        BindableRuntimeHintsRegistrar.forTypes(AppConfig.class).registerHints(hints, classLoader);
+
+        var resolver = new PathMatchingResourcePatternResolver(classLoader);
+        hints.resources().registerPattern(CAMEL_DESCRIPTORS + "*");
+        hints.resources().registerPattern(CAMEL_DESCRIPTORS + "**/*");
+        for (var descriptor : resources(resolver, "classpath*:" + CAMEL_DESCRIPTORS + "**/*")) {
+            var properties = camelClasses(descriptor);
+            for (var name : properties.stringPropertyNames()) {
+                // Most descriptors hold class=<name>, TypeConverterLoader lists one class per line
+                var className = "class".equals(name) ? properties.getProperty(name) : name;
+                registerIfPresent(hints, classLoader, className,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+            }
+        }
+
+        for (var type : resources(resolver, "classpath*:com/github/benmanes/caffeine/cache/*.class")) {
+            var simpleName = type.getFilename().replace(".class", "");
+            // Generated variants are named by their features, e.g. SSMSW or PSWMS
+            if (simpleName.matches("[A-Z]+")) {
+                registerIfPresent(hints, classLoader, "com.github.benmanes.caffeine.cache." + simpleName,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS);
+            }
+        }
+    }
+
+    private static void registerIfPresent(RuntimeHints hints, ClassLoader classLoader, String className,
+                                          MemberCategory... categories) {
+        if (className != null && className.contains(".") && ClassUtils.isPresent(className, classLoader)) {
+            hints.reflection().registerType(TypeReference.of(className), categories);
+        }
+    }
+
+    private static Resource[] resources(PathMatchingResourcePatternResolver resolver, String pattern) {
+        try {
+            return resolver.getResources(pattern);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Properties camelClasses(Resource descriptor) {
+        var properties = new Properties();
+        if (!descriptor.isReadable()) {
+            return properties;
+        }
+        try (var in = descriptor.getInputStream()) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+}
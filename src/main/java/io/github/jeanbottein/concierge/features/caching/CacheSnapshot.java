@@ -0,0 +1,288 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Saves the response cache to disk on shutdown and loads it back on startup, so a restarted
+ * replica does not send a burst of misses to the backends.
+ *
+ * The snapshot is a header followed by blocks of entries, each with its length and a CRC32C of
+ * its content. Loading maps each block into memory, checks it and parses it in parallel with the
+ * others, before the proxy routes start. A corrupt block is skipped on its own. Entries keep their
+ * original storage time, so their remaining lifetime carries over.
+ *
+ * Once the proxy is serving, the warm-up paths of each proxy are requested through it, which
+ * caches them the same way a client request would.
+ */
+@Slf4j
+@Component
+public class CacheSnapshot implements DisposableBean {
+
+    private static final int MAGIC = 0x43434E53;
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES + Short.BYTES;
+    private static final int BLOCK_HEADER_BYTES = Integer.BYTES * 2;
+    // Blocks are written once this full; a large entry makes a larger block
+    private static final int BLOCK_BYTES = 16 * 1024 * 1024;
+
+    private record Block(long position, int length, int checksum) {}
+
+    private final AppConfig appConfig;
+    private final ResponseCache responseCache;
+    private final Environment environment;
+
+    public CacheSnapshot(AppConfig appConfig, ResponseCache responseCache, Environment environment) {
+        this.appConfig = appConfig;
+        this.responseCache = responseCache;
+        this.environment = environment;
+        if (appConfig.getCacheSnapshot().isEnabled()) {
+            load(snapshotPath());
+        }
+    }
+
+    private Path snapshotPath() {
+        return Path.of(appConfig.getCacheSnapshot().getPath());
+    }
+
+    @Override
+    public void destroy() {
+        if (appConfig.getCacheSnapshot().isEnabled()) {
+            save(snapshotPath());
+        }
+    }
+
+    /**
+     * Writes every live cache entry to a temporary file, then moves it over the previous snapshot,
+     * so a crash while saving never leaves a truncated snapshot behind.
+     */
+    void save(Path path) {
+        var started = System.nanoTime();
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        var entries = new AtomicLong();
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(FORMAT_VERSION).flip());
+            var block = new ByteArrayOutputStream(BLOCK_BYTES + BLOCK_BYTES / 4);
+            var out = new DataOutputStream(block);
+            responseCache.forEachEntry((proxyName, key, response) -> {
+                try {
+                    writeEntry(out, proxyName, key, response);
+                    entries.incrementAndGet();
+                    if (block.size() >= BLOCK_BYTES) {
+                        writeBlock(channel, block);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writeBlock(channel, block);
+            channel.force(true);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not save the cache snapshot to {}: {}", path, e.toString());
+            return;
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved {} cache entries to {} in {} ms", entries.get(), path, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("Could not replace the cache snapshot {}: {}", path, e.toString());
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, String proxyName, String key, CachedResponse response)
+            throws IOException {
+        writeString(out, proxyName);
+        writeString(out, key);
+        out.writeLong(response.storedAt());
+        out.writeShort(response.status());
+        out.writeShort(response.headers().size());
+        for (var header : response.headers().entrySet()) {
+            writeString(out, header.getKey());
+            writeString(out, header.getValue());
+        }
+        out.writeInt(response.body().length);
+        out.write(response.body());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeBlock(FileChannel channel, ByteArrayOutputStream block) throws IOException {
+        if (block.size() == 0) {
+            return;
+        }
+        var content = ByteBuffer.wrap(block.toByteArray());
+        var checksum = new CRC32C();
+        checksum.update(content.duplicate());
+        channel.write(ByteBuffer.allocate(BLOCK_HEADER_BYTES).putInt(content.remaining()).putInt((int) checksum.getValue()).flip());
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+        block.reset();
+    }
+
+    /**
+     * Loads a snapshot into the cache regions of the proxies that still cache. A missing,
+     * foreign or outdated snapshot is ignored.
+     */
+    void load(Path path) {
+        if (!Files.isReadable(path)) {
+            return;
+        }
+        var started = System.nanoTime();
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(HEADER_BYTES);
+            if (channel.read(header, 0) < HEADER_BYTES || header.getInt(0) != MAGIC) {
+                log.warn("Ignoring {}, it is not a cache snapshot", path);
+                return;
+            }
+            if (header.getShort(Integer.BYTES) != FORMAT_VERSION) {
+                log.warn("Ignoring cache snapshot {} in format {}", path, header.getShort(Integer.BYTES));
+                return;
+            }
+
+            var blocks = blocks(channel);
+            var restored = new AtomicLong();
+            var skipped = new AtomicLong();
+            // Blocks are independent, parse them all at once
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (var block : blocks) {
+                    executor.submit(() -> loadBlock(channel, block, restored, skipped));
+                }
+            }
+            log.info("Restored {} cache entries from {} in {} ms ({} expired or no longer cached)",
+                restored.get(), path, (System.nanoTime() - started) / 1_000_000, skipped.get());
+        } catch (IOException e) {
+            log.warn("Could not load the cache snapshot {}: {}", path, e.toString());
+        }
+    }
+
+    private static List<Block> blocks(FileChannel channel) throws IOException {
+        var blocks = new ArrayList<Block>();
+        var blockHeader = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        var position = (long) HEADER_BYTES;
+        var size = channel.size();
+        while (position + BLOCK_HEADER_BYTES <= size) {
+            blockHeader.clear();
+            channel.read(blockHeader, position);
+            var length = blockHeader.getInt(0);
+            position += BLOCK_HEADER_BYTES;
+            if (length < 0 || position + length > size) {
+                break;
+            }
+            blocks.add(new Block(position, length, blockHeader.getInt(Integer.BYTES)));
+            position += length;
+        }
+        return blocks;
+    }
+
+    private void loadBlock(FileChannel channel, Block block, AtomicLong restored, AtomicLong skipped) {
+        try {
+            var content = channel.map(FileChannel.MapMode.READ_ONLY, block.position(), block.length());
+            var checksum = new CRC32C();
+            checksum.update(content.duplicate());
+            if ((int) checksum.getValue() != block.checksum()) {
+                log.warn("Skipping a corrupt cache snapshot block at offset {}", block.position());
+                return;
+            }
+            while (content.hasRemaining()) {
+                var proxyName = readString(content);
+                var key = readString(content);
+                var storedAt = content.getLong();
+                var status = Short.toUnsignedInt(content.getShort());
+                var headerCount = Short.toUnsignedInt(content.getShort());
+                var headers = new HashMap<String, String>(headerCount * 2);
+                for (int i = 0; i < headerCount; i++) {
+                    headers.put(readString(content), readString(content));
+                }
+                var body = new byte[content.getInt()];
+                content.get(body);
+                var response = new CachedResponse(status, headers, body, storedAt);
+                (responseCache.restore(proxyName, key, response) ? restored : skipped).incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Skipping an unreadable cache snapshot block at offset {}: {}", block.position(), e.toString());
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Requests the warm-up paths of every caching proxy through the proxy itself once it serves.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        var port = environment.getProperty("local.server.port");
+        if (port == null) {
+            return;
+        }
+        var uris = new ArrayList<URI>();
+        appConfig.getProxies().forEach((proxyName, proxyConfig) -> {
+            var caching = proxyConfig.getCaching();
+            if (proxyConfig.isEnabled() && caching.isEnabled()) {
+                for (var path : caching.getWarmUpPaths()) {
+                    uris.add(URI.create("http://localhost:" + port + "/proxy/" + proxyName + (path.startsWith("/") ? path : "/" + path)));
+                }
+            }
+        });
+        if (uris.isEmpty()) {
+            return;
+        }
+        // Startup does not wait for the backends
+        Thread.ofVirtual().name("cache-warm-up").start(() -> {
+            var client = HttpClient.newHttpClient();
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                uris.forEach(uri -> executor.submit(() -> warmUp(client, uri)));
+            }
+            log.info("Warmed up {} cached paths", uris.size());
+        });
+    }
+
+    private static void warmUp(HttpClient client, URI uri) {
+        try {
+            var response = client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+            log.debug("Warmed up {}: {}", uri, response.statusCode());
+        } catch (IOException e) {
+            log.warn("Could not warm up {}: {}", uri, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+
+/**
+ * Snapshot of a backend response kept in a proxy cache region, with the time it was
+ * stored or last revalidated.
+ */
+public record CachedResponse(int status, Map<String, String> headers, byte[] body, long storedAt) {
+
+    // Bumped whenever the binary layout written by toBytes changes
+    private static final byte FORMAT_VERSION = 1;
+
+    // Response headers worth replaying; everything else is request or hop-by-hop noise
+    private static final Set<String> REPLAYED_HEADERS = Set.of(
+        "Content-Type", "Content-Encoding", "Content-Language",
+        "Cache-Control", "ETag", "Last-Modified", "Vary"
+    );
+
+    public CachedResponse {
+        headers = Map.copyOf(headers);
+    }
+
+    public CachedResponse(int status, Map<String, String> headers, byte[] body) {
+        this(status, headers, body, System.currentTimeMillis());
+    }
+
+    public long ageMillis() {
+        return System.currentTimeMillis() - storedAt;
+    }
+
+    public String etag() {
+        return headers.get("ETag");
+    }
+
+    public String lastModified() {
+        return headers.get("Last-Modified");
+    }
+
+    /**
+     * Returns a copy freshly stored now, taking updated validators and caching headers
+     * from a 304 Not Modified answer. The body is kept as is.
+     */
+    CachedResponse revalidated(Message notModified) {
+        var refreshed = new HashMap<>(headers);
+        REPLAYED_HEADERS.forEach(name -> {
+            var value = notModified.getHeader(name, String.class);
+            if (value != null && !"Content-Type".equals(name) && !"Content-Encoding".equals(name)) {
+                refreshed.put(name, value);
+            }
+        });
+        return new CachedResponse(status, refreshed, body);
+    }
+
+    /**
+     * Captures the backend response held by the message. The body is read once and put back
+     * as bytes so the client still receives it.
+     */
+    static CachedResponse capture(Message message) {
+        var body = message.getBody(byte[].class);
+        message.setBody(body);
+
+        var headers = new HashMap<String, String>();
+        REPLAYED_HEADERS.forEach(name -> {
+            var value = message.getHeader(name, String.class);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        });
+
+        var status = message.getHeader(Exchange.HTTP_RESPONSE_CODE, 200, Integer.class);
+        return new CachedResponse(status, headers, body == null ? new byte[0] : body);
+    }
+
+    /**
+     * Encodes the response in a compact binary form: format version, stored time, status,
+     * header count, header name/value pairs, body length and body.
+     */
+    byte[] toBytes() {
+        var bytes = new ByteArrayOutputStream(body.length + 256);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(storedAt);
+            out.writeShort(status);
+            out.writeShort(headers.size());
+            for (var header : headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(header.getValue());
+            }
+            out.writeInt(body.length);
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static CachedResponse fromBytes(byte[] bytes) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            var version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported cached response format " + version);
+            }
+            var storedAt = in.readLong();
+            var status = in.readUnsignedShort();
+            var headerCount = in.readUnsignedShort();
+            var headers = new HashMap<String, String>(headerCount * 2);
+            for (int i = 0; i < headerCount; i++) {
+                headers.put(in.readUTF(), in.readUTF());
+            }
+            var body = new byte[in.readInt()];
+            in.readFully(body);
+            return new CachedResponse(status, headers, body, storedAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replaces the message with this response.
+     */
+    void applyTo(Message message) {
+        message.setHeaders(new HashMap<>(headers));
+        message.setHeader(Exchange.HTTP_RESPONSE_CODE, status);
+        message.setBody(body);
+    }
+}
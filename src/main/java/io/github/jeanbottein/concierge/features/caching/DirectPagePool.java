@@ -0,0 +1,105 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Direct memory of one off-heap cache region, handed out as fixed-size pages. Slabs of direct memory
+ * are allocated as pages are first needed, up to the region's budget, and are kept for the life of
+ * the region: a freed page goes back to the pool and is reused, rather than waiting for the garbage
+ * collector to release a direct buffer. Off-heap use is thereby bounded by the budget whatever the
+ * churn of entries.
+ *
+ * Pages cost a few bytes of heap each, 4 per page in the free list and 4 in the entry using it.
+ */
+final class DirectPagePool {
+
+    static final int PAGE_SIZE = 256;
+    private static final int PAGES_PER_SLAB = 4096;
+
+    private final int maxPages;
+    // Grows by one slab at a time, readers only ever index slabs that were published before their entry
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    // Guarded by this: pages handed back, and the number of pages carved out of the slabs so far
+    private int[] free = new int[64];
+    private int freeCount;
+    private int carved;
+
+    DirectPagePool(long maxBytes) {
+        this.maxPages = (int) Math.min(Integer.MAX_VALUE, maxBytes / PAGE_SIZE);
+    }
+
+    static int pagesFor(int bytes) {
+        return (bytes + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
+    /**
+     * Takes the pages needed to hold that many bytes, or returns null when the budget has no room left.
+     */
+    synchronized int[] allocate(int bytes) {
+        var needed = pagesFor(bytes);
+        if (needed > freeCount + (maxPages - carved)) {
+            return null;
+        }
+        var pages = new int[needed];
+        var taken = Math.min(needed, freeCount);
+        freeCount -= taken;
+        System.arraycopy(free, freeCount, pages, 0, taken);
+        for (int i = taken; i < needed; i++) {
+            if (carved == slabs.length * PAGES_PER_SLAB) {
+                addSlab();
+            }
+            pages[i] = carved++;
+        }
+        return pages;
+    }
+
+    synchronized void free(int[] pages) {
+        if (freeCount + pages.length > free.length) {
+            free = Arrays.copyOf(free, Math.max(free.length * 2, freeCount + pages.length));
+        }
+        System.arraycopy(pages, 0, free, freeCount, pages.length);
+        freeCount += pages.length;
+    }
+
+    private void addSlab() {
+        var slabPages = Math.min(PAGES_PER_SLAB, maxPages - carved);
+        var grown = Arrays.copyOf(slabs, slabs.length + 1);
+        grown[slabs.length] = ByteBuffer.allocateDirect(slabPages * PAGE_SIZE);
+        slabs = grown;
+    }
+
+    void write(int[] pages, byte[] data) {
+        var slabs = this.slabs;
+        for (int i = 0, offset = 0; offset < data.length; i++, offset += PAGE_SIZE) {
+            slab(slabs, pages[i]).put(position(pages[i]), data, offset, Math.min(PAGE_SIZE, data.length - offset));
+        }
+    }
+
+    byte[] read(int[] pages, int length) {
+        var slabs = this.slabs;
+        var data = new byte[length];
+        for (int i = 0, offset = 0; offset < length; i++, offset += PAGE_SIZE) {
+            slab(slabs, pages[i]).get(position(pages[i]), data, offset, Math.min(PAGE_SIZE, length - offset));
+        }
+        return data;
+    }
+
+    // Bytes of direct memory allocated so far
+    synchronized long allocatedBytes() {
+        return Arrays.stream(slabs).mapToLong(ByteBuffer::capacity).sum();
+    }
+
+    // Pages currently held by entries
+    synchronized int usedPages() {
+        return carved - freeCount;
+    }
+
+    private static ByteBuffer slab(ByteBuffer[] slabs, int page) {
+        return slabs[page / PAGES_PER_SLAB];
+    }
+
+    private static int position(int page) {
+        return (page % PAGES_PER_SLAB) * PAGE_SIZE;
+    }
+}
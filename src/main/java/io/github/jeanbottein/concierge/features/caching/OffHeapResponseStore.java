@@ -0,0 +1,191 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+/**
+ * Cache region storage keeping response bodies gzip-compressed in direct memory, outside the
+ * Java heap. Only a small index entry (status, headers, page numbers) stays on the heap,
+ * and eviction is weighted by the bytes held off-heap against the region's byte budget.
+ *
+ * Bodies live in the pages of a {@link DirectPagePool} sized to the budget. An entry gives its
+ * pages back once it is removed from the cache and no reader is still copying it, so memory is
+ * reused right away instead of when the garbage collector gets to a direct buffer.
+ *
+ * Bodies are handed out compressed to clients accepting gzip, and only inflated for the others.
+ */
+class OffHeapResponseStore {
+
+    // Smaller bodies rarely shrink enough to be worth a gzip header and trailer
+    private static final int MIN_COMPRESSED_SIZE = 256;
+    // Rough on-heap cost of an index entry, so budgets also cover many tiny bodies
+    private static final int ENTRY_OVERHEAD = 128;
+
+    // References counts the cache's own plus one per reader; the pages are freed when it drops to zero
+    private record Entry(int status, Map<String, String> headers, int[] pages, int length, boolean gzipped, long storedAt,
+                         AtomicInteger references) {
+
+        int weight() {
+            return ENTRY_OVERHEAD + pages.length * DirectPagePool.PAGE_SIZE;
+        }
+
+        // False once the entry was removed and its pages may already hold another body
+        boolean retain() {
+            while (true) {
+                var current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(DirectPagePool pool) {
+            if (references.decrementAndGet() == 0) {
+                pool.free(pages);
+            }
+        }
+    }
+
+    private final DirectPagePool pool;
+    private final Cache<String, Entry> entries;
+
+    OffHeapResponseStore(Caffeine<Object, Object> builder, long maxBytes) {
+        this.pool = new DirectPagePool(maxBytes);
+        this.entries = builder
+            .maximumWeight(maxBytes)
+            .weigher((String key, Entry entry) -> entry.weight())
+            // Evictions are handled while evicting, so a put that runs out of pages can make room at once
+            .evictionListener((String key, Entry entry, RemovalCause cause) -> entry.release(pool))
+            .removalListener((String key, Entry entry, RemovalCause cause) -> {
+                if (!cause.wasEvicted()) {
+                    entry.release(pool);
+                }
+            })
+            .build();
+    }
+
+    Cache<String, ?> cache() {
+        return entries;
+    }
+
+    /**
+     * Returns the entry with its body in the encoding the client asked for: still compressed
+     * with Content-Encoding: gzip when it accepts gzip, inflated otherwise.
+     */
+    CachedResponse get(String key, boolean acceptsGzip) {
+        var entry = entries.getIfPresent(key);
+        return entry == null ? null : read(entry, acceptsGzip);
+    }
+
+    /**
+     * Visits every entry, with bodies still compressed when they are stored compressed.
+     */
+    void forEach(BiConsumer<String, CachedResponse> visitor) {
+        entries.asMap().forEach((key, entry) -> {
+            var response = read(entry, true);
+            if (response != null) {
+                visitor.accept(key, response);
+            }
+        });
+    }
+
+    // Null when the entry was removed in the meantime
+    private CachedResponse read(Entry entry, boolean acceptsGzip) {
+        if (!entry.retain()) {
+            return null;
+        }
+        byte[] body;
+        try {
+            body = pool.read(entry.pages(), entry.length());
+        } finally {
+            entry.release(pool);
+        }
+        if (!entry.gzipped()) {
+            return new CachedResponse(entry.status(), entry.headers(), body, entry.storedAt());
+        }
+
+        var headers = new HashMap<>(entry.headers());
+        headers.merge("Vary", "Accept-Encoding", (vary, added) -> vary.contains(added) ? vary : vary + ", " + added);
+        if (acceptsGzip) {
+            headers.put("Content-Encoding", "gzip");
+            return new CachedResponse(entry.status(), headers, body, entry.storedAt());
+        }
+        return new CachedResponse(entry.status(), headers, gunzip(body), entry.storedAt());
+    }
+
+    /**
+     * Stores a response off-heap. A body the backend already gzipped is kept as is, an
+     * unencoded body is compressed when that makes it smaller, any other encoding is opaque.
+     * The response is not stored when the budget has no room left for it, even after evicting.
+     */
+    void put(String key, CachedResponse response) {
+        var headers = new HashMap<>(response.headers());
+        var encoding = headers.get("Content-Encoding");
+        byte[] body = response.body();
+        var gzipped = false;
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            headers.remove("Content-Encoding");
+            gzipped = true;
+        } else if (encoding == null && body.length >= MIN_COMPRESSED_SIZE) {
+            var compressed = gzip(body);
+            if (compressed.length < body.length) {
+                body = compressed;
+                gzipped = true;
+            }
+        }
+
+        var pages = pool.allocate(body.length);
+        if (pages == null) {
+            // Pages of entries past the budget come back once they are evicted
+            entries.cleanUp();
+            pages = pool.allocate(body.length);
+        }
+        if (pages == null) {
+            return;
+        }
+        pool.write(pages, body);
+        entries.put(key, new Entry(response.status(), Map.copyOf(headers), pages, body.length, gzipped,
+            response.storedAt(), new AtomicInteger(1)));
+    }
+
+    DirectPagePool pool() {
+        return pool;
+    }
+
+    void invalidate(String key) {
+        entries.invalidate(key);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        var bytes = new ByteArrayOutputStream(body.length / 2);
+        try (var out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] body) {
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shared second-level store for cached responses, kept in Redis so replicas warm up once.
+ * Reads run off the request thread, and writes are queued and sent in pipelined batches.
+ * Every write also publishes an invalidation message, so the other replicas drop their
+ * first-level copy of that key.
+ *
+ * Nothing connects to Redis unless at least one proxy has caching.distributed enabled.
+ */
+@Slf4j
+@Component
+public class RedisResponseStore implements DisposableBean {
+
+    static final String KEY_PREFIX = "concierge:cache:";
+    static final String INVALIDATION_CHANNEL = "concierge:cache:invalidate";
+
+    private static final int MAX_PENDING_WRITES = 10_000;
+    private static final int MAX_BATCH = 128;
+
+    private record Write(String key, byte[] value, Duration ttl, String invalidation) {}
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final boolean active;
+    private final BlockingQueue<Write> pendingWrites = new LinkedBlockingQueue<>(MAX_PENDING_WRITES);
+    private final List<BiConsumer<String, String>> invalidationListeners = new CopyOnWriteArrayList<>();
+    private RedisTemplate<String, byte[]> redis;
+    private ExecutorService executor;
+    private Thread writer;
+    private RedisMessageListenerContainer listenerContainer;
+
+    public RedisResponseStore(AppConfig appConfig, ObjectProvider<RedisConnectionFactory> connectionFactories) {
+        var wanted = appConfig.getProxies().values().stream()
+            .anyMatch(proxyConfig -> proxyConfig.isEnabled()
+                && proxyConfig.getCaching().isEnabled()
+                && proxyConfig.getCaching().isDistributed());
+        var connectionFactory = wanted ? connectionFactories.getIfAvailable() : null;
+        if (wanted && connectionFactory == null) {
+            log.warn("Distributed caching requested but no Redis connection is configured, using local caches only");
+        }
+        this.active = connectionFactory != null;
+
+        if (active) {
+            redis = new RedisTemplate<>();
+            redis.setConnectionFactory(connectionFactory);
+            redis.setKeySerializer(RedisSerializer.string());
+            redis.setValueSerializer(RedisSerializer.byteArray());
+            redis.afterPropertiesSet();
+
+            log.info("Using Redis as shared response cache (node: {})", nodeId);
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            writer = Thread.ofVirtual().name("concierge-redis-writer").start(this::writeBatches);
+
+            listenerContainer = new RedisMessageListenerContainer();
+            listenerContainer.setConnectionFactory(connectionFactory);
+            listenerContainer.addMessageListener((message, pattern) -> onInvalidation(message.getBody()),
+                new ChannelTopic(INVALIDATION_CHANNEL));
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Registers a callback receiving (proxyName, key) for entries rewritten by another replica.
+     */
+    public void onInvalidation(BiConsumer<String, String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    /**
+     * Reads an entry without blocking the caller.
+     */
+    public CompletableFuture<Optional<CachedResponse>> get(String proxyName, String key) {
+        return CompletableFuture.supplyAsync(
+            () -> Optional.ofNullable(redis.opsForValue().get(redisKey(proxyName, key))).map(CachedResponse::fromBytes),
+            executor);
+    }
+
+    /**
+     * Queues an entry for the next pipelined batch. When Redis cannot keep up,
+     * the write is dropped: the entry is still in the local cache.
+     */
+    public void put(String proxyName, String key, CachedResponse response, Duration ttl) {
+        var write = new Write(redisKey(proxyName, key), response.toBytes(), ttl, nodeId + '|' + proxyName + '|' + key);
+        if (!pendingWrites.offer(write)) {
+            log.debug("Dropping shared cache write for {}: queue full", key);
+        }
+    }
+
+    private static String redisKey(String proxyName, String key) {
+        return KEY_PREFIX + proxyName + ':' + key;
+    }
+
+    private void writeBatches() {
+        var batch = new ArrayList<Write>(MAX_BATCH);
+        var channel = INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pendingWrites.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pendingWrites.drainTo(batch, MAX_BATCH - 1);
+            try {
+                redis.executePipelined((RedisCallback<Object>) connection -> {
+                    for (var write : batch) {
+                        connection.stringCommands().set(write.key().getBytes(StandardCharsets.UTF_8), write.value(),
+                            Expiration.from(write.ttl()), SetOption.upsert());
+                        connection.publish(channel, write.invalidation().getBytes(StandardCharsets.UTF_8));
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Failed to write {} entries to the shared cache: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private void onInvalidation(byte[] body) {
+        var message = new String(body, StandardCharsets.UTF_8);
+        var firstSeparator = message.indexOf('|');
+        var secondSeparator = message.indexOf('|', firstSeparator + 1);
+        if (firstSeparator < 0 || secondSeparator < 0 || message.startsWith(nodeId)) {
+            return;
+        }
+        var proxyName = message.substring(firstSeparator + 1, secondSeparator);
+        var key = message.substring(secondSeparator + 1);
+        invalidationListeners.forEach(listener -> listener.accept(proxyName, key));
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (!active) {
+            return;
+        }
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        listenerContainer.destroy();
+        executor.shutdown();
+    }
+}
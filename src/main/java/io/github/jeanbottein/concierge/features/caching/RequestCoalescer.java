@@ -0,0 +1,154 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.CachingConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single-flight for identical concurrent GETs and other read-only requests. The first request
+ * for a key calls the backend, requests arriving for the same key while it is in flight wait for
+ * its response instead. Keys are the cache keys, see {@link ResponseCache#requestKey}.
+ *
+ * Conditional requests are left out, since their answer depends on validators the key ignores,
+ * and only a cacheable 2xx response is shared: on any other answer the waiting requests call the
+ * backend themselves.
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+
+    public static final String COALESCED = "coalesced";
+    private static final String FLIGHT = "coalescingFlight";
+    // 2xx answers that are the same for every request with the same key (RFC 9110 section 15.1)
+    private static final List<Integer> SHARED_STATUSES = List.of(200, 203, 204);
+
+    private record Flight(String key, CompletableFuture<CachedResponse> response) {}
+
+    private record Group(CachingConfig config, Map<String, CompletableFuture<CachedResponse>> inFlight,
+                         List<String> keyFields, List<String> keyHeaders, Duration maxWait, Counter coalesced) {}
+
+    private final MeterRegistry meterRegistry;
+    private volatile Map<String, Group> groups = Map.of();
+
+    public RequestCoalescer(AppConfig appConfig, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        reload(appConfig.getProxies());
+    }
+
+    /**
+     * Applies a new proxy configuration. Leaders of a replaced group still hand their response
+     * to the followers that joined them.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Group>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var caching = proxyConfig.getCaching();
+            // Sharing a response needs its whole body, which streaming proxies never hold
+            if (proxyConfig.isEnabled() && caching.isCoalesce() && !proxyConfig.isStreaming()) {
+                var current = groups.get(proxyName);
+                if (current != null && current.config().equals(caching)) {
+                    configured.put(proxyName, current);
+                    return;
+                }
+                log.info("Coalescing identical concurrent requests for {} (keyFields: {})", proxyName, caching.getKeyFields());
+                configured.put(proxyName, new Group(
+                    caching,
+                    new ConcurrentHashMap<>(),
+                    List.copyOf(caching.getKeyFields()),
+                    List.copyOf(caching.getKeyHeaders()),
+                    caching.getCoalesceMaxWait(),
+                    Counter.builder("concierge.proxy.coalesced")
+                        .description("Requests answered with the response of an identical in-flight request")
+                        .tag("proxy", proxyName)
+                        .register(meterRegistry)));
+            }
+        });
+        this.groups = Map.copyOf(configured);
+    }
+
+    /**
+     * Joins the in-flight call for the request's key, or becomes that call when there is none.
+     * A follower gets the leader's response and the {@link #COALESCED} property; if the leader
+     * fails, gets a response that cannot be shared or takes longer than the max wait, the follower
+     * goes to the backend itself.
+     */
+    public void join(String proxyName, Exchange exchange) throws InterruptedException {
+        var group = groups.get(proxyName);
+        if (group == null || exchange.getProperty(ResponseCache.CACHE_HIT, false, Boolean.class)
+                || conditional(exchange)) {
+            return;
+        }
+        var key = ResponseCache.requestKey(exchange, group.keyFields(), group.keyHeaders());
+        if (key == null) {
+            return;
+        }
+
+        var flight = new CompletableFuture<CachedResponse>();
+        var leading = group.inFlight().putIfAbsent(key, flight);
+        if (leading == null) {
+            lead(group, key, flight, exchange);
+            return;
+        }
+
+        try {
+            var response = leading.get(group.maxWait().toMillis(), TimeUnit.MILLISECONDS);
+            response.applyTo(exchange.getMessage());
+            exchange.setProperty(COALESCED, true);
+            group.coalesced().increment();
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Not coalescing {} for {}: {}", key, proxyName, e.toString());
+        }
+    }
+
+    private static void lead(Group group, String key, CompletableFuture<CachedResponse> flight, Exchange exchange) {
+        exchange.setProperty(FLIGHT, new Flight(key, flight));
+        // Whatever happens to the leader, followers must not wait on it forever
+        exchange.getExchangeExtension().addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange completed) {
+                group.inFlight().remove(key, flight);
+                flight.completeExceptionally(new IllegalStateException("Leading request ended without a response"));
+            }
+        });
+    }
+
+    /**
+     * Hands the leader's backend response to the requests waiting on it, or releases them to call
+     * the backend themselves when the response is not one to share.
+     */
+    public void complete(Exchange exchange) {
+        var flight = exchange.getProperty(FLIGHT, Flight.class);
+        if (flight == null) {
+            return;
+        }
+        var message = exchange.getMessage();
+        var status = message.getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        if (status != null && SHARED_STATUSES.contains(status) && ResponseCache.shareable(message)) {
+            flight.response().complete(CachedResponse.capture(message));
+        } else {
+            flight.response().completeExceptionally(new IllegalStateException("Leading request got a " + status + " response"));
+        }
+    }
+
+    private static boolean conditional(Exchange exchange) {
+        var in = exchange.getIn();
+        return in.getHeader("If-None-Match") != null || in.getHeader("If-Modified-Since") != null;
+    }
+}
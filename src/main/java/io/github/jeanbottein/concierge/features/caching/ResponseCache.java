@@ -0,0 +1,479 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.CacheStorage;
+import io.github.jeanbottein.concierge.app.config.AppConfig.CachingConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.compression.ResponseCompression;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-proxy response cache. Each proxy with caching enabled gets its own Caffeine region
+ * sized and expired according to its {@link CachingConfig}. Distributed regions also read
+ * through and write to the {@link RedisResponseStore} shared by all replicas.
+ *
+ * Entries outlive their TTL for a while: an expired entry is revalidated with the backend
+ * using its ETag / Last-Modified, may be served while an async refresh runs
+ * (staleWhileRevalidate), and may stand in for a failing backend (staleIfError).
+ *
+ * With off-heap storage, bodies live compressed outside the heap in an {@link OffHeapResponseStore}
+ * and the region is bounded by bytes instead of entries.
+ *
+ * Requests carrying credentials are not cached unless the proxy keys its entries on them, and
+ * responses marked private or no-store are never stored.
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    public static final String CACHE_HIT = "cacheHit";
+    public static final String CACHE_KEY = "cacheKey";
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+    // Set when a stale entry was served and should be refreshed in the background
+    public static final String REVALIDATE = "cacheRevalidate";
+    // Request headers as they were before a stale entry replaced the message, for the refresh call
+    public static final String REQUEST_HEADERS = "cacheRequestHeaders";
+    // Request body kept for the refresh call of a read-only request that is not a GET
+    public static final String REQUEST_BODY = "cacheRequestBody";
+    // Cache key of a request that only reads although it is not a GET, e.g. a SOAP lookup
+    public static final String READ_ONLY_KEY = "cacheReadOnlyKey";
+    private static final String STALE_ENTRY = "cacheStaleEntry";
+    private static final String CONDITIONAL = "cacheConditional";
+    // Request headers that make the response personal to the caller
+    private static final List<String> CREDENTIALS = List.of("Authorization", "Cookie");
+
+    private volatile Map<String, Region> regions = Map.of();
+
+    // Exactly one of entries (heap storage) and offHeap (off-heap storage) is set
+    private record Region(CachingConfig config, Cache<String, CachedResponse> entries, OffHeapResponseStore offHeap, List<String> keyFields,
+                          List<String> keyHeaders, long ttlMillis, long staleWhileRevalidateMillis, long staleIfErrorMillis,
+                          Duration retention, boolean distributed, Duration distributedTimeout) {
+
+        CachedResponse get(String key, boolean acceptsGzip) {
+            return offHeap != null ? offHeap.get(key, acceptsGzip) : entries.getIfPresent(key);
+        }
+
+        void put(String key, CachedResponse response) {
+            if (offHeap != null) {
+                offHeap.put(key, response);
+            } else {
+                entries.put(key, response);
+            }
+        }
+
+        void invalidate(String key) {
+            if (offHeap != null) {
+                offHeap.invalidate(key);
+            } else {
+                entries.invalidate(key);
+            }
+        }
+
+        void invalidateAll() {
+            if (offHeap != null) {
+                offHeap.cache().invalidateAll();
+            } else {
+                entries.invalidateAll();
+            }
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final RedisResponseStore sharedStore;
+
+    public ResponseCache(AppConfig appConfig, MeterRegistry meterRegistry, RedisResponseStore sharedStore) {
+        this.meterRegistry = meterRegistry;
+        this.sharedStore = sharedStore;
+        reload(appConfig.getProxies());
+
+        // Another replica rewrote an entry: drop our copy, the next lookup reads the new one from Redis
+        sharedStore.onInvalidation((proxyName, key) -> {
+            var region = regions.get(proxyName);
+            if (region != null) {
+                region.invalidate(key);
+            }
+        });
+    }
+
+    /**
+     * Applies a new proxy configuration. Regions whose caching settings did not change keep
+     * their entries; replaced and removed regions are emptied.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Region>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var caching = proxyConfig.getCaching();
+            var current = regions.get(proxyName);
+            if (proxyConfig.isEnabled() && caching.isEnabled() && proxyConfig.isStreaming()) {
+                // Caching needs the whole body, which is exactly what streaming avoids
+                log.warn("Ignoring caching for {}: not supported on streaming proxies", proxyName);
+            } else if (current != null && proxyConfig.isEnabled() && current.config().equals(caching)) {
+                configured.put(proxyName, current);
+            } else if (proxyConfig.isEnabled() && caching.isEnabled()) {
+                if (current != null) {
+                    retire(proxyName, current);
+                }
+                configured.put(proxyName, createRegion(proxyName, caching));
+            }
+        });
+        regions.forEach((proxyName, region) -> {
+            if (!configured.containsKey(proxyName)) {
+                retire(proxyName, region);
+            }
+        });
+        this.regions = Map.copyOf(configured);
+    }
+
+    private Region createRegion(String proxyName, CachingConfig caching) {
+        var distributed = caching.isDistributed() && sharedStore.isActive();
+        var offHeap = caching.getStorage() == CacheStorage.OFF_HEAP;
+        log.info("Creating cache region for {} (ttl: {}, keyFields: {}, distributed: {}, storage: {})",
+            proxyName, caching.getTtl(), caching.getKeyFields(), distributed, caching.getStorage());
+        // Expired entries are kept at least one more TTL so they can still be revalidated
+        var ttl = caching.getTtl();
+        var retention = ttl.plus(max(ttl, max(caching.getStaleWhileRevalidate(), caching.getStaleIfError())));
+        var builder = Caffeine.newBuilder().expireAfterWrite(retention).recordStats();
+        Cache<String, CachedResponse> entries = null;
+        OffHeapResponseStore offHeapStore = null;
+        if (offHeap) {
+            // Evicted by the bytes held outside the heap rather than by entry count
+            offHeapStore = new OffHeapResponseStore(builder, caching.getMaxBytes().toBytes());
+        } else {
+            entries = builder.maximumSize(caching.getMaxEntries()).build();
+        }
+        // Hits, misses and evictions show up as cache.gets / cache.evictions tagged with the region
+        CaffeineCacheMetrics.monitor(meterRegistry, offHeap ? offHeapStore.cache() : entries,
+            cacheName(proxyName), "proxy", proxyName);
+        return new Region(caching, entries, offHeapStore, List.copyOf(caching.getKeyFields()),
+            List.copyOf(caching.getKeyHeaders()), ttl.toMillis(), caching.getStaleWhileRevalidate().toMillis(), caching.getStaleIfError().toMillis(),
+            retention, distributed, caching.getDistributedTimeout());
+    }
+
+    /**
+     * Empties a region that is no longer used and unregisters its meters, which would otherwise
+     * keep reporting the old cache under the proxy's name.
+     */
+    private void retire(String proxyName, Region region) {
+        log.info("Dropping cache region for {}", proxyName);
+        region.invalidateAll();
+        meterRegistry.getMeters().stream()
+            .filter(meter -> cacheName(proxyName).equals(meter.getId().getTag("cache")))
+            .forEach(meterRegistry::remove);
+    }
+
+    private static String cacheName(String proxyName) {
+        return "proxy-" + proxyName;
+    }
+
+    public boolean isEnabled(String proxyName) {
+        return regions.containsKey(proxyName);
+    }
+
+    /**
+     * Looks up the current request in the proxy's region. On a hit the cached status, headers
+     * and body replace the message and the {@link #CACHE_HIT} property is set. A stale entry
+     * within staleWhileRevalidate is served too, with {@link #REVALIDATE} set. Past that, the
+     * request goes to the backend carrying the entry's validators.
+     */
+    public void lookup(String proxyName, Exchange exchange) {
+        var region = regions.get(proxyName);
+        var key = region == null ? null : requestKey(exchange, region.keyFields(), region.keyHeaders());
+        if (key == null) {
+            exchange.setProperty(CACHE_HIT, false);
+            return;
+        }
+        exchange.setProperty(CACHE_KEY, key);
+
+        var acceptsGzip = acceptsGzip(exchange.getIn().getHeader("Accept-Encoding", String.class));
+        var cached = region.get(key, acceptsGzip);
+        if (cached == null && region.distributed()) {
+            cached = sharedLookup(proxyName, region, key, acceptsGzip);
+        }
+        if (cached == null) {
+            exchange.setProperty(CACHE_HIT, false);
+            return;
+        }
+
+        var age = cached.ageMillis();
+        if (age < region.ttlMillis()) {
+            serve(exchange, cached, "HIT");
+            return;
+        }
+
+        // Expired: keep it for revalidation and as a fallback if the backend fails
+        exchange.setProperty(STALE_ENTRY, cached);
+        addValidators(exchange, cached);
+        if (age < region.ttlMillis() + region.staleWhileRevalidateMillis()) {
+            exchange.setProperty(REQUEST_HEADERS, new HashMap<>(exchange.getIn().getHeaders()));
+            if (exchange.getProperty(READ_ONLY_KEY) != null) {
+                exchange.setProperty(REQUEST_BODY, exchange.getIn().getBody(byte[].class));
+            }
+            exchange.setProperty(REVALIDATE, true);
+            serve(exchange, cached, "STALE");
+            return;
+        }
+        exchange.setProperty(CACHE_HIT, false);
+    }
+
+    private static void serve(Exchange exchange, CachedResponse cached, String cacheStatus) {
+        exchange.setProperty(CACHE_HIT, true);
+        cached.applyTo(exchange.getMessage());
+        exchange.getMessage().setHeader(CACHE_STATUS_HEADER, cacheStatus);
+    }
+
+    /**
+     * Turns the request into a conditional one, unless the client already made it conditional:
+     * then the 304 belongs to the client and is passed through untouched.
+     */
+    private static void addValidators(Exchange exchange, CachedResponse cached) {
+        var in = exchange.getIn();
+        if (in.getHeader("If-None-Match") != null || in.getHeader("If-Modified-Since") != null
+                || (cached.etag() == null && cached.lastModified() == null)) {
+            return;
+        }
+        if (cached.etag() != null) {
+            in.setHeader("If-None-Match", cached.etag());
+        }
+        if (cached.lastModified() != null) {
+            in.setHeader("If-Modified-Since", cached.lastModified());
+        }
+        exchange.setProperty(CONDITIONAL, true);
+    }
+
+    /**
+     * Handles the backend response for the key computed by {@link #lookup}: a 200 is stored,
+     * a 304 to our own conditional request refreshes the stale entry and serves it, and a
+     * server error is replaced by the stale entry when staleIfError allows it.
+     */
+    public void store(String proxyName, Exchange exchange) {
+        var region = regions.get(proxyName);
+        var key = exchange.getProperty(CACHE_KEY, String.class);
+        if (region == null || key == null) {
+            return;
+        }
+
+        var message = exchange.getMessage();
+        var status = message.getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        var stale = exchange.getProperty(STALE_ENTRY, CachedResponse.class);
+
+        if (status != null && status == 304 && stale != null && exchange.getProperty(CONDITIONAL, false, Boolean.class)) {
+            var refreshed = stale.revalidated(message);
+            put(proxyName, region, key, refreshed);
+            refreshed.applyTo(message);
+            message.setHeader(CACHE_STATUS_HEADER, "REVALIDATED");
+            return;
+        }
+        if ((status == null || status >= 500) && serveStaleOnError(proxyName, exchange)) {
+            return;
+        }
+
+        message.setHeader(CACHE_STATUS_HEADER, "MISS");
+        if (status == null || status != 200 || !shareable(message)) {
+            return;
+        }
+        put(proxyName, region, key, CachedResponse.capture(message));
+    }
+
+    /**
+     * Answers with the expired entry found by {@link #lookup} if it is still within the
+     * region's staleIfError window. Returns false when there is nothing to fall back on.
+     */
+    public boolean serveStaleOnError(String proxyName, Exchange exchange) {
+        var region = regions.get(proxyName);
+        var stale = exchange.getProperty(STALE_ENTRY, CachedResponse.class);
+        if (region == null || stale == null || stale.ageMillis() >= region.ttlMillis() + region.staleIfErrorMillis()) {
+            return false;
+        }
+        serve(exchange, stale, "STALE");
+        return true;
+    }
+
+    /**
+     * Whether a backend response may be replayed to other callers: not marked private or no-store,
+     * and in a coding the proxy can decode for clients that do not accept it.
+     */
+    static boolean shareable(Message response) {
+        var cacheControl = response.getHeader("Cache-Control", String.class);
+        if (cacheControl != null) {
+            for (var directive : cacheControl.split(",")) {
+                var name = directive.trim().toLowerCase(Locale.ROOT);
+                if (name.startsWith("private") || name.equals("no-store")) {
+                    return false;
+                }
+            }
+        }
+        return ResponseCompression.decodable(response.getHeader("Content-Encoding", String.class));
+    }
+
+    /**
+     * Visits every entry of every region. Off-heap bodies are visited in their stored encoding.
+     */
+    void forEachEntry(EntryVisitor visitor) {
+        regions.forEach((proxyName, region) -> {
+            if (region.offHeap() != null) {
+                region.offHeap().forEach((key, response) -> visitor.visit(proxyName, key, response));
+            } else {
+                region.entries().asMap().forEach((key, response) -> visitor.visit(proxyName, key, response));
+            }
+        });
+    }
+
+    /**
+     * Puts back an entry saved by an earlier run, unless its proxy no longer caches or it is
+     * past the region's retention. Restored entries are not written to the shared store.
+     */
+    boolean restore(String proxyName, String key, CachedResponse response) {
+        var region = regions.get(proxyName);
+        if (region == null || response.ageMillis() >= region.retention().toMillis()) {
+            return false;
+        }
+        region.put(key, response);
+        return true;
+    }
+
+    @FunctionalInterface
+    interface EntryVisitor {
+        void visit(String proxyName, String key, CachedResponse response);
+    }
+
+    private void put(String proxyName, Region region, String key, CachedResponse response) {
+        region.put(key, response);
+        if (region.distributed()) {
+            sharedStore.put(proxyName, key, response, region.retention());
+        }
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /**
+     * Reads a local miss from the shared store, giving up after the region's distributed timeout
+     * so a slow Redis never costs more than a backend call would.
+     */
+    private CachedResponse sharedLookup(String proxyName, Region region, String key, boolean acceptsGzip) {
+        try {
+            var shared = sharedStore.get(proxyName, key)
+                .get(region.distributedTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            if (shared.isEmpty()) {
+                return null;
+            }
+            region.put(key, shared.get());
+            // Off-heap regions re-encode bodies, so read back the entry in the client's encoding
+            var local = region.get(key, acceptsGzip);
+            return local != null ? local : shared.get();
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Shared cache lookup failed for {}: {}", key, e.toString());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Whether an Accept-Encoding header lets the client receive a gzip body, unless it refuses it with q=0.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        return ResponseCompression.accepts(acceptEncoding, "gzip");
+    }
+
+    /**
+     * Returns the cache key of a GET request, or the {@link #READ_ONLY_KEY} of another read-only
+     * request, followed by the digests of the key headers it carries. Returns null when the request
+     * may change state, or carries credentials that are not key headers, and must not be cached.
+     */
+    static String requestKey(Exchange exchange, List<String> keyFields, List<String> keyHeaders) {
+        var in = exchange.getIn();
+        for (var credential : CREDENTIALS) {
+            if (in.getHeader(credential) != null && keyHeaders.stream().noneMatch(credential::equalsIgnoreCase)) {
+                return null;
+            }
+        }
+        var method = in.getHeader(Exchange.HTTP_METHOD, String.class);
+        var key = !"GET".equals(method)
+            ? exchange.getProperty(READ_ONLY_KEY, String.class)
+            : keyFor(method, exchange.getProperty("remainingPath", String.class),
+                exchange.getProperty("rawQuery", String.class), keyFields);
+        if (key == null || keyHeaders.isEmpty()) {
+            return key;
+        }
+        var withHeaders = new StringBuilder(key);
+        for (var name : keyHeaders) {
+            var value = in.getHeader(name, String.class);
+            if (value != null) {
+                withHeaders.append(' ').append(name.toLowerCase(Locale.ROOT)).append('=').append(keyDigest(value));
+            }
+        }
+        return withHeaders.toString();
+    }
+
+    /**
+     * SHA-256 of a value that takes part in a cache key, which keeps credentials out of the keys
+     * written to Redis and to cache snapshots.
+     */
+    public static String keyDigest(String value) {
+        try {
+            var hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Builds a cache key from the method, the path and the configured key fields, in configuration order.
+     * Query parameters not listed in keyFields do not take part in the key.
+     */
+    static String keyFor(String method, String remainingPath, String rawQuery, List<String> keyFields) {
+        var key = new StringBuilder(method).append(' ').append(remainingPath == null ? "/" : remainingPath);
+        var separator = '?';
+        for (var field : keyFields) {
+            var value = rawQuery == null ? null : queryParam(rawQuery, field);
+            if (value != null) {
+                key.append(separator).append(field).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    private static String queryParam(String query, String name) {
+        var start = 0;
+        while (start < query.length()) {
+            var end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (query.startsWith(name, start)
+                    && start + name.length() < end
+                    && query.charAt(start + name.length()) == '=') {
+                return query.substring(start + name.length() + 1, end);
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+}
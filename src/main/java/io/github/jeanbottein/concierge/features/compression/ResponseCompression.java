@@ -0,0 +1,288 @@
+package io.github.jeanbottein.concierge.features.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Content-Encoding negotiation at the proxy edge, for proxies with compression enabled.
+ *
+ * Backends are asked for an encoding the client accepts, so compressed responses go through
+ * without being decoded. Encoded responses the client cannot take are decoded, and unencoded
+ * responses above the size threshold are compressed before leaving the proxy. Brotli is passed
+ * through but never produced: the JDK only encodes gzip and deflate. Proxies that cache or coalesce
+ * responses replay them to other clients, so they only ask the backend for codings they can decode,
+ * and compress those responses once, before they are shared, rather than on every replay.
+ */
+@Slf4j
+@Component
+public class ResponseCompression {
+
+    // The client's Accept-Encoding, kept before request headers are rewritten or replaced by a cached response
+    public static final String ACCEPT_ENCODING = "clientAcceptEncoding";
+
+    private static final List<String> PASSED_THROUGH = List.of("br", "gzip", "deflate");
+    private static final List<String> DECODED = List.of("gzip", "deflate");
+    // Statuses of the responses the cache and the coalescer replay with a body
+    private static final List<Integer> SHARED_STATUSES = List.of(200, 203);
+
+    // shared: responses may be replayed to other clients, from the cache or to coalesced requests
+    private record Settings(boolean streaming, boolean shared, long minSize, int level) {}
+
+    private volatile Map<String, Settings> settings = Map.of();
+
+    public ResponseCompression(AppConfig appConfig) {
+        reload(appConfig.getProxies());
+    }
+
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Settings>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var compression = proxyConfig.getCompression();
+            if (proxyConfig.isEnabled() && compression.isEnabled()) {
+                log.info("Negotiating response compression for {} (min size: {}, level: {})",
+                    proxyName, compression.getMinSize(), compression.getLevel());
+                var caching = proxyConfig.getCaching();
+                configured.put(proxyName, new Settings(proxyConfig.isStreaming(), caching.isEnabled() || caching.isCoalesce(),
+                    compression.getMinSize().toBytes(), compression.getLevel()));
+            }
+        });
+        this.settings = Map.copyOf(configured);
+    }
+
+    public void captureAcceptEncoding(String proxyName, Exchange exchange) {
+        if (settings.containsKey(proxyName)) {
+            exchange.setProperty(ACCEPT_ENCODING, exchange.getIn().getHeader("Accept-Encoding", String.class));
+        }
+    }
+
+    /**
+     * Sets the Accept-Encoding sent to the backend: whatever the client accepts, plus gzip when
+     * the proxy can decode it for the client. Streaming proxies never decode, so they only ask
+     * for what the client takes. Proxies that share responses between clients leave out codings
+     * they cannot decode, since a later client may not accept them.
+     */
+    public void prepareBackendRequest(String proxyName, Exchange exchange) {
+        var proxySettings = settings.get(proxyName);
+        if (proxySettings == null) {
+            return;
+        }
+        var accepted = exchange.getProperty(ACCEPT_ENCODING, String.class);
+        var encodings = new StringJoiner(", ");
+        for (var coding : proxySettings.shared() ? DECODED : PASSED_THROUGH) {
+            if (accepts(accepted, coding) || ("gzip".equals(coding) && !proxySettings.streaming())) {
+                encodings.add(coding);
+            }
+        }
+        exchange.getIn().setHeader("Accept-Encoding", encodings.length() > 0 ? encodings.toString() : "identity");
+    }
+
+    /**
+     * Gzips, once, a response the cache or the coalescer is about to replay, so each hit or follower
+     * accepting gzip gets it as it is instead of paying for a compression pass. Clients that do not
+     * accept gzip have it decoded, which costs far less than encoding it.
+     */
+    public void encodeShared(String proxyName, Exchange exchange) {
+        var proxySettings = settings.get(proxyName);
+        if (proxySettings == null || !proxySettings.shared() || proxySettings.streaming()) {
+            return;
+        }
+        var message = exchange.getMessage();
+        var status = message.getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        var encoding = message.getHeader("Content-Encoding", String.class);
+        if (status == null || !SHARED_STATUSES.contains(status)
+                || (encoding != null && !encoding.isBlank() && !"identity".equalsIgnoreCase(encoding.trim()))
+                || !compressible(message.getHeader(Exchange.CONTENT_TYPE, String.class))) {
+            return;
+        }
+        var body = message.getBody(byte[].class);
+        if (body == null || body.length < proxySettings.minSize()) {
+            return;
+        }
+        message.setBody(encode(body, "gzip", proxySettings.level()));
+        message.setHeader("Content-Encoding", "gzip");
+        message.removeHeader(Exchange.CONTENT_LENGTH);
+    }
+
+    /**
+     * Makes the response body match what the client accepts: an acceptable encoding is left alone,
+     * gzip or deflate the client refuses is decoded, and a large enough compressible body is encoded.
+     */
+    public void negotiate(String proxyName, Exchange exchange) {
+        var proxySettings = settings.get(proxyName);
+        if (proxySettings == null || proxySettings.streaming()) {
+            return;
+        }
+        var message = exchange.getMessage();
+        var accepted = exchange.getProperty(ACCEPT_ENCODING, String.class);
+        var encoding = message.getHeader("Content-Encoding", String.class);
+        var encoded = encoding != null && !"identity".equalsIgnoreCase(encoding);
+        if (encoded && accepts(accepted, encoding)) {
+            addVary(message);
+            return;
+        }
+
+        var body = message.getBody(byte[].class);
+        if (body == null) {
+            return;
+        }
+        if (encoded) {
+            var coding = encoding.trim().toLowerCase(Locale.ROOT);
+            if (!DECODED.contains(coding)) {
+                log.debug("Backend of {} answered with {} which the client does not accept", proxyName, encoding);
+                return;
+            }
+            body = decode(body, coding);
+            message.removeHeader("Content-Encoding");
+        }
+
+        var coding = accepts(accepted, "gzip") ? "gzip" : accepts(accepted, "deflate") ? "deflate" : null;
+        if (coding != null && body.length >= proxySettings.minSize()
+                && compressible(message.getHeader(Exchange.CONTENT_TYPE, String.class))) {
+            body = encode(body, coding, proxySettings.level());
+            message.setHeader("Content-Encoding", coding);
+        }
+        message.setBody(body);
+        message.removeHeader(Exchange.CONTENT_LENGTH);
+        addVary(message);
+    }
+
+    /**
+     * Whether an Accept-Encoding header lets the client receive the given content coding.
+     * A coding listed with q=0 is refused, "*" stands for any coding not listed.
+     */
+    public static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null || coding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (var entry : acceptEncoding.split(",")) {
+            var parameters = entry.split(";");
+            var name = parameters[0].trim();
+            var refused = false;
+            for (int i = 1; i < parameters.length; i++) {
+                refused |= zeroQuality(parameters[i]);
+            }
+            if (name.equalsIgnoreCase(coding.trim())) {
+                return !refused;
+            }
+            if (name.equals("*")) {
+                wildcard = !refused;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    // Whether a parameter is q=0, written with up to three decimals and any spaces around its parts
+    private static boolean zeroQuality(String parameter) {
+        var end = parameter.length();
+        var i = 0;
+        while (i < end && parameter.charAt(i) == ' ') {
+            i++;
+        }
+        while (end > i && parameter.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (i == end || Character.toLowerCase(parameter.charAt(i++)) != 'q') {
+            return false;
+        }
+        while (i < end && parameter.charAt(i) == ' ') {
+            i++;
+        }
+        if (i == end || parameter.charAt(i++) != '=') {
+            return false;
+        }
+        while (i < end && parameter.charAt(i) == ' ') {
+            i++;
+        }
+        if (i == end || parameter.charAt(i++) != '0') {
+            return false;
+        }
+        if (i == end) {
+            return true;
+        }
+        if (parameter.charAt(i++) != '.' || end - i > 3) {
+            return false;
+        }
+        for (; i < end; i++) {
+            if (parameter.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a response with this Content-Encoding can be turned into any encoding a client asks for,
+     * and so be replayed to clients other than the one it was requested for.
+     */
+    public static boolean decodable(String contentEncoding) {
+        return contentEncoding == null || contentEncoding.isBlank() || "identity".equalsIgnoreCase(contentEncoding.trim())
+            || DECODED.contains(contentEncoding.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean compressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        var type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml") || type.contains("javascript");
+    }
+
+    private static void addVary(Message message) {
+        var vary = message.getHeader("Vary", String.class);
+        if (vary == null || vary.isBlank()) {
+            message.setHeader("Vary", "Accept-Encoding");
+        } else if (!vary.toLowerCase(Locale.ROOT).contains("accept-encoding")) {
+            message.setHeader("Vary", vary + ", Accept-Encoding");
+        }
+    }
+
+    static byte[] encode(byte[] body, String coding, int level) {
+        var bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+        // The gzip stream ends its own deflater, a deflater handed to a stream is left to whoever made it
+        var deflater = "gzip".equals(coding) ? null : new Deflater(level);
+        try (var out = deflater == null
+                ? new GZIPOutputStream(bytes) { { def.setLevel(level); } }
+                : new DeflaterOutputStream(bytes, deflater)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (deflater != null) {
+                // Frees its native memory now rather than whenever the garbage collector gets to it
+                deflater.end();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] decode(byte[] body, String coding) {
+        try (var in = "gzip".equals(coding)
+                ? new GZIPInputStream(new ByteArrayInputStream(body))
+                : new InflaterInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that follows the backend's latency, after the gradient algorithm of Netflix's
+ * concurrency-limits. A long-term average of the response time is compared with a short-term one:
+ * while they match the limit grows by about its square root, and as the short-term time rises above
+ * the long-term one (a queue is building up at the backend) the limit shrinks in proportion.
+ *
+ * Taking and releasing a permit is a CAS on the in-flight count. Samples are applied by whichever
+ * thread gets the update lock; samples arriving meanwhile are dropped rather than waited on.
+ */
+final class AdaptiveLimit {
+
+    /**
+     * Priority classes, read from a request header. Each may only fill its share of the limit,
+     * so lower classes are shed first as the limit shrinks. Low priority requests never wait.
+     */
+    enum Priority {
+        CRITICAL(1.0, true),
+        NORMAL(0.9, true),
+        LOW(0.5, false);
+
+        private final double share;
+        private final boolean waits;
+
+        Priority(double share, boolean waits) {
+            this.share = share;
+            this.waits = waits;
+        }
+
+        static Priority of(String header) {
+            if (header == null) {
+                return NORMAL;
+            }
+            return switch (header.trim().toLowerCase(Locale.ROOT)) {
+                case "critical", "high" -> CRITICAL;
+                case "low", "sheddable" -> LOW;
+                default -> NORMAL;
+            };
+        }
+    }
+
+    // Latency increase tolerated before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final ReentrantLock update = new ReentrantLock();
+    private volatile double limit;
+    private double longRtt;
+    private double shortRtt;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Takes a permit within the priority's share of the limit, waiting at most maxWaitNanos for one
+     * when the priority may wait. Returns the in-flight count the permit was taken at, or -1.
+     */
+    int tryAcquire(Priority priority, long maxWaitNanos) throws InterruptedException {
+        var taken = tryTake(priority);
+        if (taken >= 0 || !priority.waits || maxWaitNanos <= 0) {
+            return taken;
+        }
+
+        var remaining = maxWaitNanos;
+        lock.lock();
+        waiting.incrementAndGet();
+        try {
+            while ((taken = tryTake(priority)) < 0) {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            return taken;
+        } finally {
+            waiting.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private int tryTake(Priority priority) {
+        var allowed = Math.max(1, (int) (limit * priority.share));
+        while (true) {
+            var current = inFlight.get();
+            if (current >= allowed) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Gives the permit back and feeds the call's response time to the limit, unless it is negative.
+     */
+    void release(long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                // Waiters of different priorities have different shares, and the limit may have grown
+                // meanwhile: each one checks for itself, a single signal could wake one that cannot go
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        sample(rttNanos, inFlightAtStart);
+    }
+
+    /**
+     * Feeds the response time of one backend call to the limit, unless it is negative.
+     */
+    void sample(long rttNanos, int inFlightAtStart) {
+        if (rttNanos >= 0 && update.tryLock()) {
+            try {
+                onSample(rttNanos, inFlightAtStart);
+            } finally {
+                update.unlock();
+            }
+        }
+    }
+
+    private void onSample(double rtt, int inFlightAtStart) {
+        shortRtt = shortRtt == 0 ? rtt : shortRtt + SHORT_ALPHA * (rtt - shortRtt);
+        longRtt = longRtt == 0 ? rtt : longRtt + LONG_ALPHA * (rtt - longRtt);
+        // After a lasting slowdown the long-term average lags behind, let it catch up with recovery
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        // A backend far from the limit says nothing about how much more it can take
+        var current = limit;
+        if (inFlightAtStart < current / 2) {
+            return;
+        }
+        var gradient = Math.clamp(TOLERANCE * longRtt / shortRtt, 0.5, 1.0);
+        var target = current * gradient + Math.sqrt(current);
+        limit = Math.clamp(current * (1 - SMOOTHING) + target * SMOOTHING, minLimit, maxLimit);
+    }
+}
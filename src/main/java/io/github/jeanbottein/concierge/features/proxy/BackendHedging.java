@@ -0,0 +1,278 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.support.ExchangeHelper;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.HedgingConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hedges slow GETs of the proxies that opt in: when the backend has not answered within the hedge
+ * delay, the same request is sent again and the first answer wins. A failed answer only wins when
+ * the other one fails too.
+ *
+ * The delay is either configured or the observed latency percentile of the proxy's GETs. A budget
+ * caps the hedged share of requests, so a backend that is slow across the board is not sent twice
+ * the load. Both calls run on virtual threads through the proxy's backend endpoint, outside of the
+ * route's backend call step; the losing one is interrupted, which closes its connection instead of
+ * waiting for the answer. A hedge holds a concurrency permit of its own from {@link ProxyBulkheads}
+ * and is not sent when the proxy has none to spare.
+ */
+@Slf4j
+@Component
+public class BackendHedging implements DisposableBean {
+
+    static final String ANSWERED = "hedgingAnswered";
+    // Latencies kept to derive the hedge delay, which is recomputed every RECOMPUTE_EVERY of them
+    private static final int SAMPLES = 1024;
+    private static final int RECOMPUTE_EVERY = 64;
+    // The budget is kept in thousandths of a hedge, and saves up to this many hedges
+    private static final long BUDGET_CAP = 10_000;
+
+    /**
+     * Recent latencies of a proxy's GETs. Samples are written without locking; an overwritten or
+     * torn slot only skews one recomputation of the percentile.
+     */
+    static final class LatencyWindow {
+
+        private final double percentile;
+        private final long[] samples = new long[SAMPLES];
+        private final AtomicLong recorded = new AtomicLong();
+        private volatile long percentileNanos = -1;
+
+        LatencyWindow(double percentile) {
+            this.percentile = percentile;
+        }
+
+        void record(long nanos) {
+            var index = recorded.getAndIncrement();
+            samples[(int) (index % SAMPLES)] = nanos;
+            if ((index + 1) % RECOMPUTE_EVERY == 0) {
+                var sorted = Arrays.copyOf(samples, (int) Math.min(index + 1, SAMPLES));
+                Arrays.sort(sorted);
+                percentileNanos = sorted[(int) (percentile * (sorted.length - 1))];
+            }
+        }
+
+        // -1 until enough latencies were recorded
+        long percentileNanos() {
+            return percentileNanos;
+        }
+    }
+
+    private record Hedger(HedgingConfig config, LatencyWindow latencies, AtomicLong budget,
+                          Counter sent, Counter won, List<Meter> meters) {
+
+        long delayNanos() {
+            return BackendHedging.delayNanos(config, latencies);
+        }
+
+        void deposit() {
+            var amount = Math.round(config.getBudget() * 1000);
+            budget.getAndUpdate(tokens -> Math.min(BUDGET_CAP, tokens + amount));
+        }
+
+        boolean tryWithdraw() {
+            while (true) {
+                var tokens = budget.get();
+                if (tokens < 1000) {
+                    return false;
+                }
+                if (budget.compareAndSet(tokens, tokens - 1000)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final ProducerTemplate producerTemplate;
+    private final ProxyBulkheads bulkheads;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile Map<String, Hedger> hedgers = Map.of();
+
+    public BackendHedging(AppConfig appConfig, MeterRegistry meterRegistry, ProducerTemplate producerTemplate,
+                          ProxyBulkheads bulkheads) {
+        this.meterRegistry = meterRegistry;
+        this.producerTemplate = producerTemplate;
+        this.bulkheads = bulkheads;
+        reload(appConfig.getProxies());
+    }
+
+    /**
+     * Applies a new proxy configuration. Unchanged proxies keep their latencies and budget.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Hedger>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var hedging = proxyConfig.getHedging();
+            if (!proxyConfig.isEnabled() || !hedging.isEnabled()) {
+                return;
+            }
+            if (proxyConfig.isStreaming()) {
+                log.warn("Not hedging {}, a streamed response cannot be raced", proxyName);
+                return;
+            }
+            var current = hedgers.get(proxyName);
+            if (current != null && current.config().equals(hedging)) {
+                configured.put(proxyName, current);
+                return;
+            }
+            if (current != null) {
+                current.meters().forEach(meterRegistry::remove);
+            }
+            log.info("Hedging GETs of {} after {} (budget: {})", proxyName,
+                hedging.getDelay() != null ? hedging.getDelay() : "p" + Math.round(hedging.getPercentile() * 100), hedging.getBudget());
+            configured.put(proxyName, createHedger(proxyName, hedging));
+        });
+        hedgers.forEach((proxyName, hedger) -> {
+            if (!configured.containsKey(proxyName)) {
+                hedger.meters().forEach(meterRegistry::remove);
+            }
+        });
+        this.hedgers = Map.copyOf(configured);
+    }
+
+    private Hedger createHedger(String proxyName, HedgingConfig hedging) {
+        var latencies = new LatencyWindow(hedging.getPercentile());
+        var sent = Counter.builder("concierge.proxy.hedge.sent")
+            .description("Hedged backend requests sent")
+            .tag("proxy", proxyName)
+            .register(meterRegistry);
+        var won = Counter.builder("concierge.proxy.hedge.won")
+            .description("Hedged backend requests that answered first")
+            .tag("proxy", proxyName)
+            .register(meterRegistry);
+        var delay = Gauge.builder("concierge.proxy.hedge.delay", latencies, l -> delayNanos(hedging, l) / 1_000_000.0)
+            .description("Current hedge delay in milliseconds, negative until enough latencies were observed")
+            .tag("proxy", proxyName)
+            .register(meterRegistry);
+        return new Hedger(hedging, latencies, new AtomicLong(), sent, won, List.of(sent, won, delay));
+    }
+
+    // -1 while the delay derives from latencies and too few were recorded
+    private static long delayNanos(HedgingConfig hedging, LatencyWindow latencies) {
+        if (hedging.getDelay() != null) {
+            return hedging.getDelay().toNanos();
+        }
+        var observed = latencies.percentileNanos();
+        return observed < 0 ? -1 : Math.max(observed, hedging.getMinDelay().toNanos());
+    }
+
+    /**
+     * Calls the backend for a hedged proxy's GET and copies the winning answer, or its failure, onto
+     * the exchange. Other requests are left for the regular backend call.
+     */
+    public void call(Exchange exchange) throws InterruptedException {
+        exchange.removeProperty(ANSWERED);
+        var proxyName = exchange.getProperty("proxyName", String.class);
+        var hedger = hedgers.get(proxyName);
+        if (hedger == null || !"GET".equals(exchange.getIn().getHeader(Exchange.HTTP_METHOD, String.class))) {
+            return;
+        }
+        hedger.deposit();
+
+        var backendUri = exchange.getProperty("backendUri", String.class);
+        var completion = new ExecutorCompletionService<Exchange>(executor);
+        var started = System.nanoTime();
+        var primary = completion.submit(() -> producerTemplate.send(backendUri, exchange.copy()));
+        Future<Exchange> hedge = null;
+        try {
+            var delay = hedger.delayNanos();
+            var first = delay < 0 ? null : completion.poll(delay, TimeUnit.NANOSECONDS);
+            if (first == null && delay >= 0) {
+                hedge = hedge(proxyName, hedger, backendUri, exchange, completion);
+            }
+            if (first == null) {
+                first = completion.take();
+            }
+            var answer = answer(first);
+            // The first answer failed, the other one may still succeed
+            if (hedge != null && answer.isFailed()) {
+                var second = answer(completion.take());
+                if (!second.isFailed()) {
+                    first = first == primary ? hedge : primary;
+                    answer = second;
+                }
+            }
+            if (first == hedge) {
+                hedger.won().increment();
+            }
+            hedger.latencies().record(System.nanoTime() - started);
+            ExchangeHelper.copyResults(exchange, answer);
+            exchange.setProperty(ANSWERED, true);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Sends the hedge when the budget and the proxy's concurrency limit both allow it, or returns null
+     */
+    private Future<Exchange> hedge(String proxyName, Hedger hedger, String backendUri, Exchange exchange,
+                                   ExecutorCompletionService<Exchange> completion) throws InterruptedException {
+        var permit = bulkheads.tryAcquireExtra(proxyName, exchange);
+        if (permit == null) {
+            return null;
+        }
+        if (!hedger.tryWithdraw()) {
+            permit.accept(-1);
+            return null;
+        }
+        hedger.sent().increment();
+        return completion.submit(() -> {
+            var sent = System.nanoTime();
+            var rttNanos = -1L;
+            try {
+                var answer = producerTemplate.send(backendUri, exchange.copy());
+                if (!answer.isFailed()) {
+                    rttNanos = System.nanoTime() - sent;
+                }
+                return answer;
+            } finally {
+                permit.accept(rttNanos);
+            }
+        });
+    }
+
+    private static Exchange answer(Future<Exchange> call) throws InterruptedException {
+        try {
+            return call.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Backend call failed outside of Camel", e.getCause());
+        }
+    }
+
+    static boolean answered(Exchange exchange) {
+        return Boolean.TRUE.equals(exchange.getProperty(ANSWERED));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
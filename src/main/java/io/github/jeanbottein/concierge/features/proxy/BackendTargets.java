@@ -0,0 +1,380 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.http.base.HttpOperationFailedException;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.LoadBalancingConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.TargetConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Spreads the requests of proxies with several targets over them.
+ *
+ * Targets are chosen by power of two choices: two targets are drawn at random, weighted by their
+ * configured weight, and the one with the lower latency EWMA times requests in flight wins. Every
+ * update is a CAS on the target, nothing is locked on the request path.
+ *
+ * A target failing too large a share of a window of requests is ejected. With a health check path
+ * it comes back once a probe succeeds, otherwise after the ejection time. When every target is
+ * ejected, requests still go to one of them rather than nowhere.
+ */
+@Slf4j
+@Component
+public class BackendTargets implements DisposableBean {
+
+    static final String TARGET = "backendTarget";
+    private static final String TARGET_STARTED = "backendTargetStarted";
+    // Weight of the newest sample in the latency average
+    private static final double EWMA_ALPHA = 0.3;
+    // A failure counts as a response this slow, so a target failing fast does not attract traffic
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Lasts until a probe succeeds with a health check, until the deadline otherwise. Deadlines are only
+    // compared by difference: System.nanoTime() has an arbitrary origin and may well be negative
+    private record Ejection(long until, boolean untilHealthy) {}
+
+    static final class Target {
+
+        private final String url;
+        private final int weight;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong latencyEwmaBits = new AtomicLong(Double.doubleToLongBits(0));
+        // Requests in the upper half, failures in the lower half, reset every window
+        private final AtomicLong window = new AtomicLong();
+        // Null while the target takes traffic
+        private final AtomicReference<Ejection> ejection = new AtomicReference<>();
+        private final AtomicLong nextProbe = new AtomicLong();
+        private final Counter successes;
+        private final Counter failures;
+        private final AtomicLong ejections = new AtomicLong();
+
+        private Target(String url, int weight, Counter successes, Counter failures) {
+            this.url = url;
+            this.weight = Math.max(1, weight);
+            this.successes = successes;
+            this.failures = failures;
+        }
+
+        String url() {
+            return url;
+        }
+
+        double latencyEwma() {
+            return Double.longBitsToDouble(latencyEwmaBits.get());
+        }
+
+        boolean ejected(long now) {
+            var current = ejection.get();
+            return current != null && (current.untilHealthy() || current.until() - now > 0);
+        }
+
+        private double cost() {
+            return (latencyEwma() + 1) * (inFlight.get() + 1);
+        }
+
+        private void recordLatency(long nanos) {
+            while (true) {
+                var bits = latencyEwmaBits.get();
+                var current = Double.longBitsToDouble(bits);
+                var next = current == 0 ? nanos : current + EWMA_ALPHA * (nanos - current);
+                if (latencyEwmaBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private record Group(List<TargetConfig> targetConfigs, LoadBalancingConfig config, Target[] targets,
+                         int[] cumulativeWeights, List<Meter> meters) {
+
+        Target draw() {
+            var total = cumulativeWeights[cumulativeWeights.length - 1];
+            var point = ThreadLocalRandom.current().nextInt(total);
+            var index = 0;
+            while (cumulativeWeights[index] <= point) {
+                index++;
+            }
+            return targets[index];
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final HttpClient healthClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+    private final ScheduledExecutorService healthChecks = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("target-health").daemon().factory());
+    private volatile Map<String, Group> groups = Map.of();
+
+    public BackendTargets(AppConfig appConfig, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        reload(appConfig.getProxies());
+        healthChecks.scheduleWithFixedDelay(this::checkEjectedTargets, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Applies a new proxy configuration. A proxy with the same targets and settings keeps its
+     * latency averages and ejections; a changed one starts over with every target healthy.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Group>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var targets = proxyConfig.getTargets();
+            if (!proxyConfig.isEnabled() || targets.size() < 2) {
+                return;
+            }
+            var current = groups.get(proxyName);
+            if (current != null && current.targetConfigs().equals(targets)
+                    && current.config().equals(proxyConfig.getLoadBalancing())) {
+                configured.put(proxyName, current);
+                return;
+            }
+            if (current != null) {
+                current.meters().forEach(meterRegistry::remove);
+            }
+            log.info("Balancing {} over {}", proxyName, targets.stream().map(TargetConfig::getUrl).toList());
+            configured.put(proxyName, createGroup(proxyName, List.copyOf(targets), proxyConfig.getLoadBalancing()));
+        });
+        groups.forEach((proxyName, group) -> {
+            if (!configured.containsKey(proxyName)) {
+                group.meters().forEach(meterRegistry::remove);
+            }
+        });
+        this.groups = Map.copyOf(configured);
+    }
+
+    private Group createGroup(String proxyName, List<TargetConfig> targetConfigs, LoadBalancingConfig config) {
+        var targets = new Target[targetConfigs.size()];
+        var cumulativeWeights = new int[targets.length];
+        var meters = new ArrayList<Meter>();
+        var total = 0;
+        for (int i = 0; i < targets.length; i++) {
+            var url = targetConfigs.get(i).getUrl();
+            var successes = outcomeCounter(proxyName, url, "success");
+            var failures = outcomeCounter(proxyName, url, "failure");
+            var target = new Target(url, targetConfigs.get(i).getWeight(), successes, failures);
+            meters.add(successes);
+            meters.add(failures);
+            meters.add(Gauge.builder("concierge.proxy.target.latency", target, t -> t.latencyEwma() / 1_000_000)
+                .description("Moving average of the target's response time in milliseconds")
+                .tag("proxy", proxyName).tag("target", url)
+                .register(meterRegistry));
+            meters.add(Gauge.builder("concierge.proxy.target.ejected", target, t -> t.ejected(System.nanoTime()) ? 1 : 0)
+                .tag("proxy", proxyName).tag("target", url)
+                .register(meterRegistry));
+            meters.add(FunctionCounter.builder("concierge.proxy.target.ejections", target, t -> t.ejections.get())
+                .tag("proxy", proxyName).tag("target", url)
+                .register(meterRegistry));
+            targets[i] = target;
+            total += target.weight;
+            cumulativeWeights[i] = total;
+        }
+        return new Group(targetConfigs, config, targets, cumulativeWeights, List.copyOf(meters));
+    }
+
+    private Counter outcomeCounter(String proxyName, String url, String outcome) {
+        return Counter.builder("concierge.proxy.target.requests")
+            .description("Backend calls per target and outcome")
+            .tag("proxy", proxyName).tag("target", url).tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Picks the target of the exchange's backend call, or returns null when the proxy has a single target.
+     */
+    public Target select(String proxyName, Exchange exchange) {
+        var group = groups.get(proxyName);
+        if (group == null) {
+            return null;
+        }
+        var target = choose(group, null);
+        start(target, exchange);
+        exchange.getExchangeExtension().addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange completed) {
+                var last = completed.getProperty(TARGET, Target.class);
+                last.inFlight.decrementAndGet();
+                // Failures that never reached recordFailure, e.g. a connection refused without retries
+                if (completed.getProperty(TARGET_STARTED) != null && completed.isFailed()) {
+                    record(group, last, completed, true);
+                }
+            }
+        });
+        return target;
+    }
+
+    /**
+     * Records the backend response of the exchange, a 5xx counting as a failure.
+     */
+    public void recordResponse(String proxyName, Exchange exchange) {
+        var group = groups.get(proxyName);
+        var target = exchange.getProperty(TARGET, Target.class);
+        if (group == null || target == null || exchange.getProperty(TARGET_STARTED) == null) {
+            return;
+        }
+        var status = exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, 200, Integer.class);
+        record(group, target, exchange, status >= 500);
+    }
+
+    /**
+     * Records a failed attempt and returns the target a retry should go to, another one when there
+     * is a healthy alternative. Returns null when the proxy has a single target.
+     */
+    public Target recordFailure(String proxyName, Exchange exchange) {
+        var group = groups.get(proxyName);
+        var failed = exchange.getProperty(TARGET, Target.class);
+        if (group == null || failed == null) {
+            return null;
+        }
+        var cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+        if (cause instanceof HttpOperationFailedException failure && failure.getStatusCode() < 500) {
+            // The target answered, the request was wrong
+            record(group, failed, exchange, false);
+            return failed;
+        }
+        if (exchange.getProperty(TARGET_STARTED) != null) {
+            record(group, failed, exchange, true);
+        }
+        var next = choose(group, failed);
+        failed.inFlight.decrementAndGet();
+        start(next, exchange);
+        return next;
+    }
+
+    private static void start(Target target, Exchange exchange) {
+        target.inFlight.incrementAndGet();
+        exchange.setProperty(TARGET, target);
+        exchange.setProperty(TARGET_STARTED, System.nanoTime());
+    }
+
+    private static Target choose(Group group, Target avoid) {
+        var now = System.nanoTime();
+        var first = group.draw();
+        var second = group.draw();
+        for (int attempt = 0; attempt < 4 && (first == avoid || first.ejected(now)); attempt++) {
+            first = group.draw();
+        }
+        for (int attempt = 0; attempt < 4 && (second == avoid || second.ejected(now)); attempt++) {
+            second = group.draw();
+        }
+        if (first == avoid || first.ejected(now)) {
+            return usable(second, avoid, now) ? second : anyHealthy(group, avoid, now, second);
+        }
+        if (second == avoid || second.ejected(now)) {
+            return first;
+        }
+        return first.cost() <= second.cost() ? first : second;
+    }
+
+    private static boolean usable(Target target, Target avoid, long now) {
+        return target != avoid && !target.ejected(now);
+    }
+
+    // The random draws kept hitting unusable targets, fall back to a scan
+    private static Target anyHealthy(Group group, Target avoid, long now, Target fallback) {
+        for (var target : group.targets()) {
+            if (usable(target, avoid, now)) {
+                return target;
+            }
+        }
+        return fallback;
+    }
+
+    private void record(Group group, Target target, Exchange exchange, boolean failed) {
+        var started = exchange.removeProperty(TARGET_STARTED);
+        if (started instanceof Long startNanos) {
+            var elapsed = System.nanoTime() - startNanos;
+            target.recordLatency(failed ? Math.max(elapsed, FAILURE_PENALTY_NANOS) : elapsed);
+        }
+        (failed ? target.failures : target.successes).increment();
+
+        var config = group.config();
+        var sample = target.window.addAndGet((1L << 32) + (failed ? 1 : 0));
+        var requests = sample >>> 32;
+        if (requests < config.getEjectionWindow() || !target.window.compareAndSet(sample, 0)) {
+            return;
+        }
+        var failures = sample & 0xFFFFFFFFL;
+        if (failures >= config.getEjectionErrorRate() * requests) {
+            eject(group, target);
+        }
+    }
+
+    private void eject(Group group, Target target) {
+        var config = group.config();
+        var now = System.nanoTime();
+        target.ejection.set(config.getHealthCheckPath() != null
+            ? new Ejection(now, true)
+            : new Ejection(now + config.getEjectionTime().toNanos(), false));
+        // Probed at the next health check round
+        target.nextProbe.set(now);
+        target.ejections.incrementAndGet();
+        log.warn("Ejected target {} after too many failures", target.url());
+    }
+
+    /**
+     * Probes the ejected targets of proxies with a health check path, at each proxy's interval,
+     * and brings back the ones answering 2xx.
+     */
+    private void checkEjectedTargets() {
+        var now = System.nanoTime();
+        for (var group : groups.values()) {
+            var config = group.config();
+            if (config.getHealthCheckPath() == null) {
+                continue;
+            }
+            for (var target : group.targets()) {
+                if (target.ejected(now) && now - target.nextProbe.get() >= 0) {
+                    probe(target, config);
+                }
+            }
+        }
+    }
+
+    private void probe(Target target, LoadBalancingConfig config) {
+        target.nextProbe.set(System.nanoTime() + config.getHealthCheckInterval().toNanos());
+        var request = HttpRequest.newBuilder(URI.create(target.url() + config.getHealthCheckPath()))
+            .timeout(config.getHealthCheckInterval())
+            .GET()
+            .build();
+        healthClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            var ejection = target.ejection.get();
+            if (error == null && response.statusCode() / 100 == 2 && ejection != null && ejection.untilHealthy()
+                    && target.ejection.compareAndSet(ejection, null)) {
+                // Forget the failures' latency, or the target would barely get traffic again
+                target.latencyEwmaBits.set(Double.doubleToLongBits(0));
+                target.window.set(0);
+                log.info("Target {} is healthy again", target.url());
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        healthChecks.shutdownNow();
+    }
+}
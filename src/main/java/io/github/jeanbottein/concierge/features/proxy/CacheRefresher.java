@@ -0,0 +1,89 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.support.DefaultExchange;
+
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+import io.github.jeanbottein.concierge.features.compression.ResponseCompression;
+import io.github.jeanbottein.concierge.features.resilience.BackendResilience;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Refreshes stale cache entries in the background after they were served under
+ * staleWhileRevalidate. At most one refresh per key is in flight; the backend answer goes
+ * through {@link ResponseCache#store} like any other, so a 304 only refreshes metadata.
+ *
+ * A refresh is a backend call like the route's own: it asks for the same encodings, needs the
+ * circuit breaker's permission and a spare concurrency permit, and is recorded in the metrics.
+ * Without a permission or a permit it is skipped, the entry is refreshed by a later request.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class CacheRefresher {
+
+    private final ResponseCache responseCache;
+    private final ProducerTemplate producerTemplate;
+    private final BackendResilience resilience;
+    private final ProxyBulkheads bulkheads;
+    private final ResponseCompression compression;
+    private final ProxyMetrics metrics;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    @SuppressWarnings("unchecked")
+    void refreshIfStale(String proxyName, String backendUri, Exchange served) throws InterruptedException {
+        if (!served.getProperty(ResponseCache.REVALIDATE, false, Boolean.class)) {
+            return;
+        }
+        var key = served.getProperty(ResponseCache.CACHE_KEY, String.class);
+        if (!refreshing.add(proxyName + ' ' + key)) {
+            return;
+        }
+
+        // The served exchange now carries the cached response, rebuild the request from what lookup kept
+        var refresh = new DefaultExchange(served.getContext());
+        served.getProperties().forEach(refresh::setProperty);
+        refresh.removeProperty(ResponseCache.REVALIDATE);
+        // Captured after the header policy was applied, so they are ready for the backend
+        refresh.getIn().setHeaders(new HashMap<>(served.getProperty(ResponseCache.REQUEST_HEADERS, Map.class)));
+        ProxyRouter.setBackendPath(refresh);
+        refresh.getIn().setBody(served.getProperty(ResponseCache.REQUEST_BODY));
+        compression.prepareBackendRequest(proxyName, refresh);
+
+        var permit = bulkheads.tryAcquireExtra(proxyName, refresh);
+        if (permit == null) {
+            log.debug("Not refreshing {}: no concurrency permit left for {}", key, proxyName);
+            refreshing.remove(proxyName + ' ' + key);
+            return;
+        }
+        if (!resilience.tryAcquirePermission(proxyName, refresh)) {
+            log.debug("Not refreshing {}: circuit of {} is open", key, proxyName);
+            permit.accept(-1);
+            refreshing.remove(proxyName + ' ' + key);
+            return;
+        }
+        metrics.backendStarted(refresh);
+        var started = System.nanoTime();
+        producerTemplate.asyncSend(backendUri, refresh).whenComplete((done, error) -> {
+            refreshing.remove(proxyName + ' ' + key);
+            var failure = error != null ? error : done.getException();
+            permit.accept(failure != null ? -1 : System.nanoTime() - started);
+            metrics.backendCompleted(proxyName, refresh);
+            if (failure != null) {
+                log.debug("Background refresh of {} failed: {}", key, failure.toString());
+                refresh.setProperty(Exchange.EXCEPTION_CAUGHT, failure);
+                resilience.recordFailure(proxyName, refresh);
+                return;
+            }
+            resilience.recordSuccess(proxyName, done);
+            compression.encodeShared(proxyName, done);
+            responseCache.store(proxyName, done);
+        });
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig.HeadersConfig;
+
+/**
+ * Request headers rewriting of one proxy, resolved once when its route is built. Applying it walks
+ * the headers a single time, dropping Camel's own headers, hop-by-hop headers, headers named by the
+ * Connection header and those the allow and deny lists exclude, then sets the injected headers.
+ *
+ * Header names are matched without regard to case through {@link HeaderNames}, which neither
+ * lower-cases nor allocates, so a request only allocates the map entries of the headers it sets.
+ */
+final class HeaderPolicy {
+
+    private static final String CAMEL_PREFIX = "Camel";
+    private static final String JSON = "application/json";
+    // Hop-by-hop headers (RFC 9110 section 7.6.1), and those the HTTP client derives from the request it sends
+    private static final HeaderNames DROPPED = new HeaderNames(List.of(
+        "Connection", "Keep-Alive", "Proxy-Connection", "Proxy-Authenticate", "Proxy-Authorization",
+        "TE", "Trailer", "Transfer-Encoding", "Upgrade", "Host", "Content-Length"));
+    // Camel headers the backend call still needs
+    private static final HeaderNames CAMEL_KEPT = new HeaderNames(List.of(Exchange.HTTP_METHOD));
+
+    private final HeaderNames allowed;
+    private final HeaderNames denied;
+    private final String[] injectedNames;
+    private final String[] injectedValues;
+    // Non-SOAP proxies always speak JSON to their backend
+    private final boolean json;
+
+    private HeaderPolicy(HeaderNames allowed, HeaderNames denied, String[] injectedNames, String[] injectedValues,
+                         boolean json) {
+        this.allowed = allowed;
+        this.denied = denied;
+        this.injectedNames = injectedNames;
+        this.injectedValues = injectedValues;
+        this.json = json;
+    }
+
+    static HeaderPolicy of(HeadersConfig config, boolean json) {
+        var denied = new ArrayList<>(config.getDeny());
+        var names = new ArrayList<String>();
+        var values = new ArrayList<String>();
+        config.getInject().forEach((name, value) -> {
+            if (value == null || value.isEmpty()) {
+                denied.add(name);
+            } else {
+                names.add(name);
+                values.add(value);
+            }
+        });
+        return new HeaderPolicy(new HeaderNames(config.getAllow()), new HeaderNames(denied),
+            names.toArray(String[]::new), values.toArray(String[]::new), json);
+    }
+
+    /**
+     * Rewrites the request headers of the message for the backend call
+     */
+    void apply(Message message) {
+        var headers = message.getHeaders();
+        var connection = headers.get("Connection") instanceof String value ? value : null;
+        for (var names = headers.keySet().iterator(); names.hasNext(); ) {
+            if (dropped(names.next(), connection)) {
+                names.remove();
+            }
+        }
+        for (int i = 0; i < injectedNames.length; i++) {
+            headers.put(injectedNames[i], injectedValues[i]);
+        }
+        if (json) {
+            headers.put(Exchange.CONTENT_TYPE, JSON);
+            headers.put("Accept", JSON);
+        } else {
+            headers.putIfAbsent("Accept", JSON);
+        }
+    }
+
+    private boolean dropped(String name, String connection) {
+        if (name.regionMatches(true, 0, CAMEL_PREFIX, 0, CAMEL_PREFIX.length())) {
+            return !CAMEL_KEPT.contains(name);
+        }
+        return DROPPED.contains(name)
+            || denied.contains(name)
+            || (!allowed.isEmpty() && !allowed.contains(name))
+            || (connection != null && listed(connection, name));
+    }
+
+    // Whether the comma-separated Connection header value lists the name
+    private static boolean listed(String connection, String name) {
+        var start = 0;
+        while (start < connection.length()) {
+            var end = connection.indexOf(',', start);
+            if (end < 0) {
+                end = connection.length();
+            }
+            var from = start;
+            var to = end;
+            while (from < to && connection.charAt(from) == ' ') {
+                from++;
+            }
+            while (to > from && connection.charAt(to - 1) == ' ') {
+                to--;
+            }
+            if (to - from == name.length() && connection.regionMatches(true, from, name, 0, name.length())) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Set of header names compared without regard to case. Names are hashed with their ASCII letters
+     * folded to lower case, character by character, into an open-addressed table kept at most half full.
+     */
+    static final class HeaderNames {
+
+        private final String[] slots;
+        private final int size;
+
+        HeaderNames(Collection<String> names) {
+            slots = new String[Integer.highestOneBit(Math.max(2, names.size() * 2) - 1) << 1];
+            var added = 0;
+            for (var name : names) {
+                var mask = slots.length - 1;
+                var slot = hash(name) & mask;
+                while (slots[slot] != null && !slots[slot].equalsIgnoreCase(name)) {
+                    slot = (slot + 1) & mask;
+                }
+                if (slots[slot] == null) {
+                    slots[slot] = name;
+                    added++;
+                }
+            }
+            size = added;
+        }
+
+        boolean contains(String name) {
+            var mask = slots.length - 1;
+            for (var slot = hash(name) & mask; slots[slot] != null; slot = (slot + 1) & mask) {
+                if (slots[slot].equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        private static int hash(String name) {
+            var hash = 0;
+            for (int i = 0; i < name.length(); i++) {
+                var c = name.charAt(i);
+                hash = 31 * hash + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
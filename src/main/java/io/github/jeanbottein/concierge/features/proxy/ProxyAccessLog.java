@@ -0,0 +1,123 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.Exchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One compact access log line per proxied exchange, written by a background thread.
+ * The request thread only samples and enqueues into a bounded buffer; when the buffer
+ * is full the entry is dropped and counted rather than slowing the request down.
+ * Dropped entries are exposed as the concierge.accesslog.dropped counter.
+ */
+@Slf4j
+@Component
+public class ProxyAccessLog implements DisposableBean {
+
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger("concierge.access");
+
+    private record Entry(String proxyName, String method, String path, String query,
+                         Integer status, boolean cacheHit, long durationMillis) {}
+
+    private final BlockingQueue<Entry> buffer;
+    private volatile Map<String, Double> sampleRates;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    public ProxyAccessLog(AppConfig appConfig, MeterRegistry meterRegistry) {
+        this.buffer = new ArrayBlockingQueue<>(appConfig.getAccessLogBufferSize());
+        reload(appConfig.getProxies());
+        FunctionCounter.builder("concierge.accesslog.dropped", dropped, AtomicLong::get)
+            .description("Access log entries dropped because the buffer was full")
+            .register(meterRegistry);
+        this.writer = Thread.ofPlatform().daemon().name("concierge-access-log").start(this::drain);
+    }
+
+    public void reload(Map<String, ProxyConfig> proxies) {
+        var rates = new HashMap<String, Double>();
+        proxies.forEach((proxyName, proxyConfig) -> rates.put(proxyName, proxyConfig.getAccessLogSampleRate()));
+        this.sampleRates = Map.copyOf(rates);
+    }
+
+    /**
+     * Queues the access log entry for the exchange, subject to the proxy's sample rate.
+     */
+    public void record(String proxyName, Exchange exchange) {
+        if (!ACCESS_LOG.isInfoEnabled() || !sampled(proxyName)) {
+            return;
+        }
+        var entry = new Entry(
+            proxyName,
+            exchange.getProperty("httpMethod", String.class),
+            exchange.getProperty("remainingPath", String.class),
+            exchange.getProperty("rawQuery", String.class),
+            exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class),
+            exchange.getProperty(ResponseCache.CACHE_HIT, false, Boolean.class),
+            exchange.getClock().elapsed());
+        if (!buffer.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private boolean sampled(String proxyName) {
+        var rate = sampleRates.getOrDefault(proxyName, 1.0);
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    public long droppedEntries() {
+        return dropped.get();
+    }
+
+    private void drain() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                write(buffer.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Flush whatever is left on shutdown
+        Entry entry;
+        while ((entry = buffer.poll()) != null) {
+            write(entry);
+        }
+    }
+
+    private void write(Entry entry) {
+        ACCESS_LOG.info("proxy={} method={} path={}{}{} status={} cache={} duration={}ms",
+            entry.proxyName(),
+            entry.method(),
+            entry.path(),
+            entry.query() != null ? "?" : "",
+            entry.query() != null ? entry.query() : "",
+            entry.status(),
+            entry.cacheHit() ? "HIT" : "MISS",
+            entry.durationMillis());
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        if (dropped.get() > 0) {
+            log.warn("Access log dropped {} entries because its buffer was full", dropped.get());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ConcurrencyConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.proxy.AdaptiveLimit.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caps the number of in-flight backend calls per proxy, so a slow backend cannot hold
+ * every request thread. Proxies without a {@link ConcurrencyConfig#getMaxConcurrent()} and not
+ * {@link ConcurrencyConfig#isAdaptive()} are not limited.
+ *
+ * An adaptive limit follows the backend's response time (see {@link AdaptiveLimit}) and sheds
+ * requests by priority class when it is reached: low priority ones right away, the others after
+ * waiting up to the configured max wait.
+ */
+@Slf4j
+@Component
+public class ProxyBulkheads {
+
+    private static final String PRIORITY = "requestPriority";
+    private static final String ADAPTIVE_PERMIT = "adaptivePermit";
+    private static final String ATTEMPT_STARTED = "backendAttemptStarted";
+
+    private record Bulkhead(ConcurrencyConfig config, Semaphore permits, AdaptiveLimit adaptive, long maxWaitNanos,
+                            Map<Priority, Counter> shed, List<Meter> meters) {}
+
+    // The adaptive limit an exchange holds a permit of, fed the response time of each of its backend attempts
+    private record AdaptivePermit(AdaptiveLimit adaptive, int inFlightAtStart) {}
+
+    private final MeterRegistry meterRegistry;
+    private volatile Map<String, Bulkhead> bulkheads = Map.of();
+
+    public ProxyBulkheads(AppConfig appConfig, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        reload(appConfig.getProxies());
+    }
+
+    /**
+     * Applies a new proxy configuration. Unchanged limits keep their semaphore or adaptive limit;
+     * exchanges holding a permit of a replaced one release it there.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Bulkhead>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var concurrency = proxyConfig.getConcurrency();
+            if (proxyConfig.isEnabled() && (concurrency.getMaxConcurrent() > 0 || concurrency.isAdaptive())) {
+                var current = bulkheads.get(proxyName);
+                if (current != null && current.config().equals(concurrency)) {
+                    configured.put(proxyName, current);
+                    return;
+                }
+                if (current != null) {
+                    current.meters().forEach(meterRegistry::remove);
+                }
+                configured.put(proxyName, createBulkhead(proxyName, concurrency));
+            }
+        });
+        bulkheads.forEach((proxyName, bulkhead) -> {
+            if (!configured.containsKey(proxyName)) {
+                bulkhead.meters().forEach(meterRegistry::remove);
+            }
+        });
+        this.bulkheads = Map.copyOf(configured);
+    }
+
+    private Bulkhead createBulkhead(String proxyName, ConcurrencyConfig concurrency) {
+        var maxWaitNanos = concurrency.getMaxWait().toNanos();
+        if (!concurrency.isAdaptive()) {
+            log.info("Limiting {} to {} concurrent backend calls (max wait: {})",
+                proxyName, concurrency.getMaxConcurrent(), concurrency.getMaxWait());
+            return new Bulkhead(concurrency, new Semaphore(concurrency.getMaxConcurrent()), null, maxWaitNanos, Map.of(), List.of());
+        }
+
+        log.info("Adapting {} concurrent backend calls of {} between {} and {} (max wait: {}, priority header: {})",
+            concurrency.getInitialLimit(), proxyName, concurrency.getMinLimit(), concurrency.getMaxLimit(),
+            concurrency.getMaxWait(), concurrency.getPriorityHeader());
+        var adaptive = new AdaptiveLimit(concurrency.getInitialLimit(), concurrency.getMinLimit(), concurrency.getMaxLimit());
+        var meters = new ArrayList<Meter>();
+        meters.add(Gauge.builder("concierge.proxy.concurrency.limit", adaptive, AdaptiveLimit::limit)
+            .description("Current adaptive concurrency limit")
+            .tag("proxy", proxyName)
+            .register(meterRegistry));
+        var shed = new EnumMap<Priority, Counter>(Priority.class);
+        for (var priority : Priority.values()) {
+            var counter = Counter.builder("concierge.proxy.shed")
+                .description("Requests shed by the adaptive concurrency limit")
+                .tag("proxy", proxyName)
+                .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry);
+            shed.put(priority, counter);
+            meters.add(counter);
+        }
+        return new Bulkhead(concurrency, null, adaptive, maxWaitNanos, shed, List.copyOf(meters));
+    }
+
+    /**
+     * Reads the request's priority class on proxies with an adaptive limit. Runs before the header
+     * policy rewrites the request headers, which may drop the priority header.
+     */
+    public void capturePriority(String proxyName, Exchange exchange) {
+        var bulkhead = bulkheads.get(proxyName);
+        if (bulkhead != null && bulkhead.adaptive() != null) {
+            exchange.setProperty(PRIORITY, Priority.of(exchange.getIn().getHeader(bulkhead.config().getPriorityHeader(), String.class)));
+        }
+    }
+
+    // The priority captured from the original request, or read from the header when it was not captured
+    private static Priority priority(Bulkhead bulkhead, Exchange exchange) {
+        var captured = exchange.getProperty(PRIORITY, Priority.class);
+        return captured != null
+            ? captured
+            : Priority.of(exchange.getIn().getHeader(bulkhead.config().getPriorityHeader(), String.class));
+    }
+
+    /**
+     * Takes a permit for the backend call, released when the exchange completes.
+     * Waits at most the configured max wait and rejects with 503 past it.
+     */
+    public void acquire(String proxyName, Exchange exchange) throws InterruptedException {
+        var bulkhead = bulkheads.get(proxyName);
+        if (bulkhead == null) {
+            return;
+        }
+        if (bulkhead.adaptive() != null) {
+            acquireAdaptive(proxyName, bulkhead, exchange);
+            return;
+        }
+
+        var permits = bulkhead.permits();
+        if (!permits.tryAcquire(bulkhead.maxWaitNanos(), TimeUnit.NANOSECONDS)) {
+            throw new ProxyRejectedException(503, "Too many concurrent requests for " + proxyName);
+        }
+        exchange.getExchangeExtension().addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange completed) {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Takes a permit, without waiting, for an extra backend call made for an exchange that already
+     * holds one, such as a hedge. Returns what releases it with the call's response time, or -1
+     * when that says nothing about the backend, or null when the proxy has no permit to spare.
+     */
+    LongConsumer tryAcquireExtra(String proxyName, Exchange exchange) throws InterruptedException {
+        var bulkhead = bulkheads.get(proxyName);
+        if (bulkhead == null) {
+            return rttNanos -> { };
+        }
+        if (bulkhead.adaptive() != null) {
+            var adaptive = bulkhead.adaptive();
+            var inFlightAtStart = adaptive.tryAcquire(priority(bulkhead, exchange), 0);
+            return inFlightAtStart < 0 ? null : rttNanos -> adaptive.release(rttNanos, inFlightAtStart);
+        }
+        var permits = bulkhead.permits();
+        return permits.tryAcquire() ? rttNanos -> permits.release() : null;
+    }
+
+    private void acquireAdaptive(String proxyName, Bulkhead bulkhead, Exchange exchange) throws InterruptedException {
+        var adaptive = bulkhead.adaptive();
+        var priority = priority(bulkhead, exchange);
+        var inFlightAtStart = adaptive.tryAcquire(priority, bulkhead.maxWaitNanos());
+        if (inFlightAtStart < 0) {
+            bulkhead.shed().get(priority).increment();
+            throw new ProxyRejectedException(503, "Shedding " + priority.name().toLowerCase(Locale.ROOT) + " priority requests for " + proxyName);
+        }
+        exchange.setProperty(ADAPTIVE_PERMIT, new AdaptivePermit(adaptive, inFlightAtStart));
+        exchange.getExchangeExtension().addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange completed) {
+                // The backend attempts were sampled as they ended
+                adaptive.release(-1, inFlightAtStart);
+            }
+        });
+    }
+
+    /**
+     * Marks the start of a backend attempt, the first one or a retry.
+     */
+    public void attemptStarted(Exchange exchange) {
+        exchange.setProperty(ATTEMPT_STARTED, System.nanoTime());
+    }
+
+    /**
+     * Feeds the response time of the backend attempt that just ended, answered or failed, to the
+     * adaptive limit the exchange holds a permit of. Retry backoffs fall between attempts, so they
+     * are not taken for backend latency.
+     */
+    public void attemptCompleted(Exchange exchange) {
+        var permit = exchange.getProperty(ADAPTIVE_PERMIT, AdaptivePermit.class);
+        var started = exchange.removeProperty(ATTEMPT_STARTED);
+        if (permit != null && started instanceof Long startedNanos) {
+            permit.adaptive().sample(System.nanoTime() - startedNanos, permit.inFlightAtStart());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.caching.RequestCoalescer;
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+import io.github.jeanbottein.concierge.features.compression.ResponseCompression;
+import io.github.jeanbottein.concierge.features.resilience.BackendResilience;
+import io.github.jeanbottein.concierge.features.soap.SoapOperations;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Applies changes to concierge.proxies on a configuration refresh (e.g. POST /actuator/refresh)
+ * without restarting. The old and new proxy maps are diffed and only the proxies that were added,
+ * removed or changed are rebuilt; the others keep their cache entries, connections and breaker state.
+ *
+ * Every component swaps in its new settings as an immutable snapshot, so requests never wait on
+ * a reload. Routes that were replaced or removed drain on a background thread before their
+ * endpoints and connection pools are closed.
+ */
+@Slf4j
+@Component
+public class ProxyConfigReloader {
+
+    private final AppConfig appConfig;
+    private final Environment environment;
+    private final ProxyRouter router;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer coalescer;
+    private final ProxyBulkheads bulkheads;
+    private final ProxyRateLimiter rateLimiter;
+    private final ProxyConnectionPools connectionPools;
+    private final BackendResilience resilience;
+    private final ProxyAccessLog accessLog;
+    private final ProxyMetrics metrics;
+    private final ResponseCompression compression;
+    private final SoapOperations soapOperations;
+    private final BackendTargets backendTargets;
+    private final BackendHedging hedging;
+
+    private Map<String, ProxyConfig> current;
+
+    public ProxyConfigReloader(AppConfig appConfig, Environment environment, ProxyRouter router,
+                               ResponseCache responseCache, RequestCoalescer coalescer, ProxyBulkheads bulkheads,
+                               ProxyRateLimiter rateLimiter, ProxyConnectionPools connectionPools,
+                               BackendResilience resilience,
+                               ProxyAccessLog accessLog, ProxyMetrics metrics, ResponseCompression compression,
+                               SoapOperations soapOperations, BackendTargets backendTargets,
+                               BackendHedging hedging) {
+        this.appConfig = appConfig;
+        this.environment = environment;
+        this.router = router;
+        this.responseCache = responseCache;
+        this.coalescer = coalescer;
+        this.bulkheads = bulkheads;
+        this.rateLimiter = rateLimiter;
+        this.connectionPools = connectionPools;
+        this.resilience = resilience;
+        this.accessLog = accessLog;
+        this.metrics = metrics;
+        this.compression = compression;
+        this.soapOperations = soapOperations;
+        this.backendTargets = backendTargets;
+        this.hedging = hedging;
+        this.current = Map.copyOf(appConfig.getProxies());
+    }
+
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().noneMatch(key -> key.startsWith("concierge.proxies"))) {
+            return;
+        }
+        // Bound into a fresh instance: rebinding the existing one would keep proxies that were removed
+        var proxies = Binder.get(environment).bind("concierge", AppConfig.class)
+            .map(AppConfig::getProxies)
+            .orElseGet(HashMap::new);
+        reload(proxies);
+    }
+
+    /**
+     * Rebuilds what changed between the current proxies and the given ones.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var changed = new HashSet<String>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            if (!Objects.equals(current.get(proxyName), proxyConfig)) {
+                changed.add(proxyName);
+            }
+        });
+        var removed = new HashSet<>(current.keySet());
+        removed.removeAll(proxies.keySet());
+        if (changed.isEmpty() && removed.isEmpty()) {
+            log.info("Proxy configuration refreshed, nothing changed");
+            return;
+        }
+        log.info("Reloading proxies (changed or added: {}, removed: {})", changed, removed);
+
+        // Per-proxy resources first, the route table last: a request resolving a new route finds everything it needs
+        metrics.reload(proxies);
+        accessLog.reload(proxies);
+        bulkheads.reload(proxies);
+        rateLimiter.reload(proxies);
+        resilience.reload(proxies);
+        responseCache.reload(proxies);
+        coalescer.reload(proxies);
+        compression.reload(proxies);
+        soapOperations.reload(proxies);
+        backendTargets.reload(proxies);
+        hedging.reload(proxies);
+        var closePools = connectionPools.reload(proxies);
+        var retired = router.reload(proxies, changed);
+        current = Map.copyOf(proxies);
+
+        Thread.ofVirtual().name("concierge-proxy-drain").start(() -> drain(retired, closePools));
+    }
+
+    private void drain(List<ProxyRoute> retired, Runnable closePools) {
+        var deadline = System.nanoTime() + appConfig.getReloadDrainTimeout().toNanos();
+        try {
+            for (var proxyRoute : retired) {
+                while (proxyRoute.inFlight().get() > 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(50);
+                }
+                if (proxyRoute.inFlight().get() > 0) {
+                    log.warn("{} exchanges of the previous {} route still in flight after the drain timeout",
+                        proxyRoute.inFlight().get(), proxyRoute.name());
+                }
+            }
+            router.removeEndpoints(retired);
+            closePools.run();
+            log.info("Released {} replaced proxy routes", retired.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Failed to release replaced proxy routes: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.component.http.HttpClientConfigurer;
+import org.apache.camel.spi.Registry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ConnectionPoolConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dedicated HTTP connection pool per proxy, built from its {@link ConnectionPoolConfig}.
+ * Pool usage is exposed at /actuator/proxypools.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "proxypools")
+public class ProxyConnectionPools implements DisposableBean {
+
+    public record PoolUsage(int leased, int available, int pending, int max) {}
+
+    // The id keeps registry bindings, and so backend endpoint URIs, distinct across reloads
+    private record Pool(String id, ConnectionPoolConfig config, boolean rawContent,
+                        PoolingHttpClientConnectionManager manager, HttpClientConfigurer configurer) {
+
+        String managerBean() {
+            return "proxyPool-" + id;
+        }
+
+        String configurerBean() {
+            return "proxyClientConfigurer-" + id;
+        }
+    }
+
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile Map<String, Pool> pools = Map.of();
+    // Where the pools were bound, so retired ones can be unbound; null until a route was built
+    private volatile Registry registry;
+
+    public ProxyConnectionPools(AppConfig appConfig) {
+        reload(appConfig.getProxies());
+    }
+
+    /**
+     * Applies a new proxy configuration. Pools whose settings did not change are kept with their
+     * open connections. Replaced and removed pools still serve in-flight exchanges: they are only
+     * unbound from the registry and closed by the returned action, to be run once those exchanges
+     * have drained.
+     */
+    public synchronized Runnable reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Pool>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            if (proxyConfig.isEnabled()) {
+                var current = pools.get(proxyName);
+                // With compression handled by the proxy, encoded responses must reach it undecoded
+                var rawContent = proxyConfig.getCompression().isEnabled();
+                var unchanged = current != null
+                    && current.config().equals(proxyConfig.getConnectionPool())
+                    && current.rawContent() == rawContent;
+                configured.put(proxyName, unchanged
+                    ? current
+                    : createPool(proxyName + '-' + generation.incrementAndGet(), proxyConfig.getConnectionPool(), rawContent));
+            }
+        });
+
+        var retired = pools.values().stream()
+            .filter(pool -> !configured.containsValue(pool))
+            .toList();
+        this.pools = Map.copyOf(configured);
+        var boundIn = registry;
+        return () -> retired.forEach(pool -> {
+            log.info("Closing retired connection pool {}", pool.id());
+            if (boundIn != null) {
+                boundIn.unbind(pool.managerBean());
+                boundIn.unbind(pool.configurerBean());
+            }
+            pool.manager().close(CloseMode.GRACEFUL);
+        });
+    }
+
+    private static Pool createPool(String id, ConnectionPoolConfig config, boolean rawContent) {
+        var connectionConfig = ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeout().toMillis()))
+            .setSocketTimeout(Timeout.ofMilliseconds(config.getReadTimeout().toMillis()))
+            .setTimeToLive(config.getTimeToLive() == null
+                ? TimeValue.NEG_ONE_MILLISECOND
+                : TimeValue.ofMilliseconds(config.getTimeToLive().toMillis()))
+            .build();
+
+        var manager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(config.getMaxTotal())
+            .setMaxConnPerRoute(config.getMaxPerRoute())
+            .setDefaultConnectionConfig(connectionConfig)
+            .build();
+
+        var idleTimeout = TimeValue.ofMilliseconds(config.getIdleTimeout().toMillis());
+        var keepAlive = TimeValue.ofMilliseconds(config.getKeepAlive().toMillis());
+        HttpClientConfigurer configurer = builder -> {
+            if (rawContent) {
+                builder.disableContentCompression();
+            }
+            builder
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout)
+                // Reuse connections for the backend's announced keep-alive, or ours when it says nothing
+                .setKeepAliveStrategy((response, context) -> response.containsHeader("Keep-Alive")
+                    ? DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context)
+                    : keepAlive);
+        };
+
+        return new Pool(id, config, rawContent, manager, configurer);
+    }
+
+    /**
+     * Registers the proxy's pool in the Camel registry and returns the endpoint options that select it.
+     */
+    public String endpointOptions(CamelContext camelContext, String proxyName) {
+        var pool = pools.get(proxyName);
+        if (pool == null) {
+            return "";
+        }
+
+        registry = camelContext.getRegistry();
+        registry.bind(pool.managerBean(), pool.manager());
+        registry.bind(pool.configurerBean(), pool.configurer());
+        return "&clientConnectionManager=#" + pool.managerBean() + "&httpClientConfigurer=#" + pool.configurerBean();
+    }
+
+    @ReadOperation
+    public Map<String, PoolUsage> usage() {
+        var usage = new LinkedHashMap<String, PoolUsage>();
+        pools.forEach((proxyName, pool) -> {
+            var stats = pool.manager().getTotalStats();
+            usage.put(proxyName, new PoolUsage(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax()));
+        });
+        return usage;
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach((proxyName, pool) -> {
+            log.info("Closing connection pool for {}", proxyName);
+            pool.manager().close(CloseMode.GRACEFUL);
+        });
+    }
+}
@@ -0,0 +1,198 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer instrumentation of the proxy routes: end-to-end and backend latency,
+ * request and response sizes, and in-flight exchanges, tagged by proxy, method and status class.
+ * Meters are resolved once per tag combination and reused, so the hot path only records.
+ * Tags only take a fixed set of values, whatever clients send, and the meters of a proxy
+ * dropped by a reload are removed.
+ */
+@Component
+public class ProxyMetrics {
+
+    private static final String BACKEND_STARTED = "backendStarted";
+    // Any other method, including made-up ones, is tagged OTHER
+    private static final Set<String> METHODS = Set.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS");
+
+    private record MeterKey(String method, String status) {}
+
+    private final class ProxyMeters {
+        private final String proxyName;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Map<MeterKey, Timer> requests = new ConcurrentHashMap<>();
+        private final Map<MeterKey, Timer> backend = new ConcurrentHashMap<>();
+        private final DistributionSummary requestBytes;
+        private final DistributionSummary responseBytes;
+        private final Gauge inFlightGauge;
+        // Exchanges still running when the proxy was dropped must not register its meters again
+        private volatile boolean removed;
+
+        private ProxyMeters(String proxyName) {
+            this.proxyName = proxyName;
+            this.requestBytes = DistributionSummary.builder("concierge.proxy.request.bytes")
+                .baseUnit("bytes")
+                .tag("proxy", proxyName)
+                .register(meterRegistry);
+            this.responseBytes = DistributionSummary.builder("concierge.proxy.response.bytes")
+                .baseUnit("bytes")
+                .tag("proxy", proxyName)
+                .register(meterRegistry);
+            this.inFlightGauge = Gauge.builder("concierge.proxy.inflight", inFlight, AtomicInteger::get)
+                .description("Exchanges currently being proxied")
+                .tag("proxy", proxyName)
+                .register(meterRegistry);
+        }
+
+        private Timer requestTimer(MeterKey key) {
+            return requests.computeIfAbsent(key, k -> timer("concierge.proxy.requests", "End-to-end proxy latency", k));
+        }
+
+        private Timer backendTimer(MeterKey key) {
+            return backend.computeIfAbsent(key, k -> timer("concierge.proxy.backend", "Backend call latency", k));
+        }
+
+        private Timer timer(String name, String description, MeterKey key) {
+            return Timer.builder(name)
+                .description(description)
+                .tag("proxy", proxyName)
+                .tag("method", key.method())
+                .tag("status", key.status())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        }
+
+        private void remove() {
+            removed = true;
+            requests.values().forEach(meterRegistry::remove);
+            backend.values().forEach(meterRegistry::remove);
+            meterRegistry.remove(requestBytes);
+            meterRegistry.remove(responseBytes);
+            meterRegistry.remove(inFlightGauge);
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private volatile Map<String, ProxyMeters> meters = Map.of();
+
+    public ProxyMetrics(AppConfig appConfig, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        reload(appConfig.getProxies());
+    }
+
+    /**
+     * Applies a new proxy configuration. Meters only depend on the proxy name, so existing
+     * proxies keep theirs and their in-flight count. Dropped proxies lose theirs.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, ProxyMeters>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            if (proxyConfig.isEnabled()) {
+                var current = meters.get(proxyName);
+                configured.put(proxyName, current != null ? current : new ProxyMeters(proxyName));
+            }
+        });
+        meters.forEach((proxyName, proxyMeters) -> {
+            if (!configured.containsKey(proxyName)) {
+                proxyMeters.remove();
+            }
+        });
+        this.meters = Map.copyOf(configured);
+    }
+
+    /**
+     * Starts tracking an exchange entering the proxy route. Must run before the request
+     * headers are rewritten, since the request size is read from Content-Length.
+     */
+    public void start(String proxyName, Exchange exchange) {
+        var proxyMeters = meters.get(proxyName);
+        if (proxyMeters == null) {
+            return;
+        }
+
+        var requestLength = exchange.getIn().getHeader(Exchange.CONTENT_LENGTH, Long.class);
+        if (requestLength != null) {
+            proxyMeters.requestBytes.record(requestLength);
+        }
+
+        proxyMeters.inFlight.incrementAndGet();
+        exchange.getExchangeExtension().addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange completed) {
+                proxyMeters.inFlight.decrementAndGet();
+                if (proxyMeters.removed) {
+                    return;
+                }
+                proxyMeters.requestTimer(meterKey(completed))
+                    .record(completed.getClock().elapsed(), TimeUnit.MILLISECONDS);
+                var responseLength = responseLength(completed);
+                if (responseLength >= 0) {
+                    proxyMeters.responseBytes.record(responseLength);
+                }
+            }
+        });
+    }
+
+    public void backendStarted(Exchange exchange) {
+        exchange.setProperty(BACKEND_STARTED, System.nanoTime());
+    }
+
+    /**
+     * Records the backend call latency, whether it answered or failed.
+     */
+    public void backendCompleted(String proxyName, Exchange exchange) {
+        var proxyMeters = meters.get(proxyName);
+        var started = exchange.getProperty(BACKEND_STARTED, Long.class);
+        if (proxyMeters == null || started == null || proxyMeters.removed) {
+            return;
+        }
+        proxyMeters.backendTimer(meterKey(exchange)).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private static MeterKey meterKey(Exchange exchange) {
+        var method = exchange.getProperty("httpMethod", String.class);
+        method = method == null ? "UNKNOWN" : METHODS.contains(method) ? method : "OTHER";
+        var status = exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        return new MeterKey(method, statusClass(status));
+    }
+
+    private static String statusClass(Integer status) {
+        if (status == null) {
+            return "UNKNOWN";
+        }
+        return switch (status / 100) {
+            case 1 -> "1xx";
+            case 2 -> "2xx";
+            case 3 -> "3xx";
+            case 4 -> "4xx";
+            case 5 -> "5xx";
+            default -> "UNKNOWN";
+        };
+    }
+
+    private static long responseLength(Exchange exchange) {
+        var body = exchange.getMessage().getBody();
+        if (body instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        var contentLength = exchange.getMessage().getHeader(Exchange.CONTENT_LENGTH, Long.class);
+        return contentLength == null ? -1 : contentLength;
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.http.common.HttpMessage;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.RateLimitConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Limits the request rate of each proxy, as a whole and per client, before any other work is done
+ * for the request. Rejected requests get 429 with a Retry-After header.
+ *
+ * Buckets are a single CAS-updated timestamp, so they take no lock and a few dozen bytes each.
+ * Client buckets live in a bounded Caffeine cache that forgets idle clients, which keeps memory
+ * flat with millions of distinct keys and spreads contention over its striped table.
+ */
+@Slf4j
+@Component
+public class ProxyRateLimiter {
+
+    /**
+     * Token bucket kept as the time at which it will be full again (GCRA). A request adds one
+     * emission interval to that time and is refused when this would go past now plus the burst.
+     */
+    static final class TokenBucket extends AtomicLong {
+
+        private final long intervalNanos;
+        private final long toleranceNanos;
+
+        TokenBucket(double perSecond, int burst, long now) {
+            super(now);
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+            var capacity = burst > 0 ? burst : Math.max(1, (int) Math.ceil(perSecond));
+            this.toleranceNanos = intervalNanos * (capacity - 1);
+        }
+
+        /**
+         * Takes a token, returning 0 on success or how many nanoseconds to wait for one
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                var fullAt = get();
+                var next = Math.max(fullAt, now) + intervalNanos;
+                var wait = next - now - toleranceNanos - intervalNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (compareAndSet(fullAt, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private record Limiter(RateLimitConfig config, TokenBucket proxyBucket, Cache<String, TokenBucket> clientBuckets,
+                           List<Meter> meters, Counter proxyRejections, Counter clientRejections) {}
+
+    private final MeterRegistry meterRegistry;
+    private volatile Map<String, Limiter> limiters = Map.of();
+
+    public ProxyRateLimiter(AppConfig appConfig, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        reload(appConfig.getProxies());
+    }
+
+    /**
+     * Applies a new proxy configuration. Unchanged limits keep their buckets, changed ones start full.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Limiter>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var rateLimit = proxyConfig.getRateLimit();
+            if (!proxyConfig.isEnabled() || (rateLimit.getRequestsPerSecond() <= 0 && rateLimit.getClientRequestsPerSecond() <= 0)) {
+                return;
+            }
+            var current = limiters.get(proxyName);
+            if (current != null && current.config().equals(rateLimit)) {
+                configured.put(proxyName, current);
+                return;
+            }
+            if (current != null) {
+                current.meters().forEach(meterRegistry::remove);
+            }
+            log.info("Rate limiting {} to {} req/s (burst {}) and {} req/s per client (burst {}, keyed by {})",
+                proxyName, rateLimit.getRequestsPerSecond(), rateLimit.getBurst(),
+                rateLimit.getClientRequestsPerSecond(), rateLimit.getClientBurst(),
+                rateLimit.getClientKeyHeader() != null ? rateLimit.getClientKeyHeader() : "remote address");
+            configured.put(proxyName, createLimiter(proxyName, rateLimit));
+        });
+        limiters.forEach((proxyName, limiter) -> {
+            if (!configured.containsKey(proxyName)) {
+                limiter.meters().forEach(meterRegistry::remove);
+            }
+        });
+        this.limiters = Map.copyOf(configured);
+    }
+
+    private Limiter createLimiter(String proxyName, RateLimitConfig rateLimit) {
+        var now = System.nanoTime();
+        var proxyBucket = rateLimit.getRequestsPerSecond() > 0
+            ? new TokenBucket(rateLimit.getRequestsPerSecond(), rateLimit.getBurst(), now)
+            : null;
+        Cache<String, TokenBucket> clientBuckets = rateLimit.getClientRequestsPerSecond() > 0
+            ? Caffeine.newBuilder()
+                .maximumSize(rateLimit.getMaxClients())
+                .expireAfterAccess(rateLimit.getClientIdleTimeout())
+                .build()
+            : null;
+        var proxyRejections = rejectionCounter(proxyName, "proxy");
+        var clientRejections = rejectionCounter(proxyName, "client");
+        return new Limiter(rateLimit, proxyBucket, clientBuckets, List.of(proxyRejections, clientRejections),
+            proxyRejections, clientRejections);
+    }
+
+    private Counter rejectionCounter(String proxyName, String scope) {
+        return Counter.builder("concierge.proxy.rate.limited")
+            .description("Requests rejected by a rate limit")
+            .tag("proxy", proxyName)
+            .tag("scope", scope)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Takes a token from the client's bucket, then from the proxy's, and rejects with 429 when
+     * either is empty. A client over its own limit does not use up the proxy's tokens.
+     */
+    public void acquire(String proxyName, Exchange exchange) {
+        var limiter = limiters.get(proxyName);
+        if (limiter == null) {
+            return;
+        }
+
+        var now = System.nanoTime();
+        if (limiter.clientBuckets() != null) {
+            var clientKey = clientKey(limiter.config(), exchange);
+            if (clientKey != null) {
+                var config = limiter.config();
+                var bucket = limiter.clientBuckets().get(clientKey,
+                    key -> new TokenBucket(config.getClientRequestsPerSecond(), config.getClientBurst(), now));
+                var wait = bucket.tryAcquire(now);
+                if (wait > 0) {
+                    limiter.clientRejections().increment();
+                    throw rejection("Client rate limit exceeded for " + proxyName, wait);
+                }
+            }
+        }
+        if (limiter.proxyBucket() != null) {
+            var wait = limiter.proxyBucket().tryAcquire(now);
+            if (wait > 0) {
+                limiter.proxyRejections().increment();
+                throw rejection("Rate limit exceeded for " + proxyName, wait);
+            }
+        }
+    }
+
+    private static ProxyRejectedException rejection(String message, long waitNanos) {
+        // Retry-After only has second precision, rounding down would invite an early retry
+        var seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        return new ProxyRejectedException(429, message, Duration.ofSeconds(seconds));
+    }
+
+    private static String clientKey(RateLimitConfig config, Exchange exchange) {
+        if (config.getClientKeyHeader() != null) {
+            var key = exchange.getIn().getHeader(config.getClientKeyHeader(), String.class);
+            if (key != null && !key.isBlank()) {
+                return key;
+            }
+        }
+        if (exchange.getIn() instanceof HttpMessage httpMessage && httpMessage.getRequest() != null) {
+            return httpMessage.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.time.Duration;
+
+import lombok.Getter;
+
+/**
+ * Signals that a proxied request was refused before reaching the backend.
+ * The route answers with the carried status instead of an error page.
+ */
+@Getter
+public class ProxyRejectedException extends RuntimeException {
+
+    private final int status;
+    // When the client may try again, sent as Retry-After; null when unknown
+    private final Duration retryAfter;
+
+    public ProxyRejectedException(int status, String message) {
+        this(status, message, null);
+    }
+
+    public ProxyRejectedException(int status, String message, Duration retryAfter) {
+        // Rejections are expected under load, a stack trace would only cost time
+        super(message, null, false, false);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.camel.Exchange;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig.HeadersConfig;
+
+/**
+ * Immutable settings of one proxy, resolved at startup or on reload and looked up per request
+ * by the ingress route. Retry is null when resilience is off for the proxy. SOAP proxies may send
+ * some operations to other endpoints than backendUri, and proxies with several targets have one
+ * endpoint per target URL. The header policy rewrites request headers for the backend. The in-flight
+ * count lets a route replaced by a reload drain before its resources are released.
+ */
+record ProxyRoute(String name, String targetUrl, String backendUri, boolean streaming, RetryPolicy retry,
+                  boolean soap, Map<String, String> operationBackendUris, Map<String, String> targetBackendUris,
+                  HeaderPolicy headerPolicy, AtomicInteger inFlight) {
+
+    static final String PROPERTY = "proxyRoute";
+
+    ProxyRoute(String name, String targetUrl, String backendUri, boolean streaming, RetryPolicy retry) {
+        this(name, targetUrl, backendUri, streaming, retry, false, Map.of(), Map.of());
+    }
+
+    ProxyRoute(String name, String targetUrl, String backendUri, boolean streaming, RetryPolicy retry,
+               boolean soap, Map<String, String> operationBackendUris, Map<String, String> targetBackendUris) {
+        this(name, targetUrl, backendUri, streaming, retry, soap, operationBackendUris, targetBackendUris,
+            HeaderPolicy.of(new HeadersConfig(), !soap));
+    }
+
+    ProxyRoute(String name, String targetUrl, String backendUri, boolean streaming, RetryPolicy retry,
+               boolean soap, Map<String, String> operationBackendUris, Map<String, String> targetBackendUris,
+               HeaderPolicy headerPolicy) {
+        this(name, targetUrl, backendUri, streaming, retry, soap, operationBackendUris, targetBackendUris,
+            headerPolicy, new AtomicInteger());
+    }
+
+    /**
+     * Endpoint serving the given SOAP operation, the proxy's own unless the operation has a target of its own.
+     */
+    String backendUri(String operation) {
+        return operation == null ? backendUri : operationBackendUris.getOrDefault(operation, backendUri);
+    }
+
+    /**
+     * Every backend endpoint of the proxy: its own, its targets' and its SOAP operations'.
+     */
+    Stream<String> backendUris() {
+        return Stream.of(Stream.of(backendUri), targetBackendUris.values().stream(), operationBackendUris.values().stream())
+            .flatMap(uris -> uris);
+    }
+
+    /**
+     * Backoff settings of a proxy. Proxies sharing the same policy share one error handler clause.
+     */
+    record RetryPolicy(Duration delay, int delayFactor) {}
+
+    static ProxyRoute of(Exchange exchange) {
+        return exchange.getProperty(PROPERTY, ProxyRoute.class);
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lookup of proxies by the first path segment after /proxy/.
+ *
+ * Open addressing over a power-of-two array, hashed straight from the request URI so resolving
+ * a proxy allocates nothing and costs the same with 2 or 2000 proxies. The table is immutable
+ * once built.
+ */
+final class ProxyRouteTable {
+
+    static final String PROXY_PATH_PREFIX = "/proxy/";
+
+    private final ProxyRoute[] slots;
+    private final int mask;
+    private final List<ProxyRoute> routes;
+
+    ProxyRouteTable(Collection<ProxyRoute> routes) {
+        // Keep the load factor at or below 0.5 so probe sequences stay short
+        var capacity = Integer.highestOneBit(Math.max(2, routes.size()) * 4 - 1);
+        this.slots = new ProxyRoute[capacity];
+        this.mask = capacity - 1;
+        this.routes = List.copyOf(routes);
+        for (var route : routes) {
+            var name = route.name();
+            var slot = hash(name, 0, name.length()) & mask;
+            while (slots[slot] != null) {
+                if (slots[slot].name().equals(name)) {
+                    throw new IllegalArgumentException("Duplicate proxy " + name);
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = route;
+        }
+    }
+
+    int size() {
+        return routes.size();
+    }
+
+    List<ProxyRoute> routes() {
+        return routes;
+    }
+
+    ProxyRoute get(String proxyName) {
+        return resolve(PROXY_PATH_PREFIX + proxyName);
+    }
+
+    /**
+     * Finds the proxy named by the segment following /proxy/ in the request URI, or null.
+     */
+    ProxyRoute resolve(String requestUri) {
+        if (requestUri == null || !requestUri.startsWith(PROXY_PATH_PREFIX)) {
+            return null;
+        }
+        var start = PROXY_PATH_PREFIX.length();
+        var end = requestUri.indexOf('/', start);
+        if (end < 0) {
+            end = requestUri.length();
+        }
+        var length = end - start;
+
+        for (var slot = hash(requestUri, start, end) & mask; slots[slot] != null; slot = (slot + 1) & mask) {
+            var name = slots[slot].name();
+            if (name.length() == length && requestUri.regionMatches(start, name, 0, length)) {
+                return slots[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The part of a request URI resolved to the route that follows the proxy name, "/" when nothing does.
+     */
+    static String remainingPath(String requestUri, ProxyRoute route) {
+        var start = PROXY_PATH_PREFIX.length() + route.name().length();
+        return start >= requestUri.length() ? "/" : requestUri.substring(start);
+    }
+
+    private static int hash(String value, int from, int to) {
+        var hash = 0;
+        for (var i = from; i < to; i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        // Spread the high bits, the mask only keeps the low ones
+        return hash ^ (hash >>> 16);
+    }
+}
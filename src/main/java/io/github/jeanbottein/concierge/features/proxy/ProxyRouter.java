@@ -1,19 +1,42 @@
 package io.github.jeanbottein.concierge.features.proxy;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.camel.Exchange;
+import org.apache.camel.Predicate;
+import org.apache.camel.builder.PredicateBuilder;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.http.base.HttpOperationFailedException;
+import org.apache.camel.model.FilterDefinition;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.ToDynamicDefinition;
+import org.apache.camel.support.SynchronizationAdapter;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import io.github.jeanbottein.concierge.app.config.AppConfig;
 import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ResilienceConfig;
+import io.github.jeanbottein.concierge.features.caching.RequestCoalescer;
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+import io.github.jeanbottein.concierge.features.compression.ResponseCompression;
+import io.github.jeanbottein.concierge.features.proxy.ProxyRoute.RetryPolicy;
+import io.github.jeanbottein.concierge.features.resilience.BackendResilience;
+import io.github.jeanbottein.concierge.features.soap.SoapOperations;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Dynamic proxy route handler that creates routes for all proxies configured under concierge.proxies.
+ * Proxy route handler serving all proxies configured under concierge.proxies from one ingress route.
+ * Requests are dispatched by the first path segment after /proxy/ through a {@link ProxyRouteTable}
+ * built at startup, so adding proxies adds neither routes nor consumers.
  */
 @Slf4j
 @Component
@@ -22,137 +45,450 @@ import lombok.extern.slf4j.Slf4j;
 public class ProxyRouter extends RouteBuilder {
 
     private final AppConfig appConfig;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer coalescer;
+    private final ProxyBulkheads bulkheads;
+    private final ProxyRateLimiter rateLimiter;
+    private final ProxyConnectionPools connectionPools;
+    private final BackendResilience resilience;
+    private final ProxyAccessLog accessLog;
+    private final ProxyMetrics metrics;
+    private final ResponseCompression compression;
+    private final SoapOperations soapOperations;
+    private final BackendTargets backendTargets;
+    private final BackendHedging hedging;
     
-    private static final String PROXY_PATH_PREFIX = "/proxy/";
+    static final String INGRESS_ROUTE_ID = "proxy-ingress";
+    private static final String BACKEND_URI = "backendUri";
+    
+    private static final SynchronizationAdapter IN_FLIGHT_RELEASE = new SynchronizationAdapter() {
+        @Override
+        public void onDone(Exchange exchange) {
+            ProxyRoute.of(exchange).inFlight().decrementAndGet();
+        }
+    };
+    
+    private CacheRefresher cacheRefresher;
+    // Replaced as a whole on configuration reload, requests always see one consistent table
+    private volatile ProxyRouteTable routeTable;
+    private Set<RetryPolicy> retryClauses = Set.of();
 
     @Override
     public void configure() throws Exception {
         log.info("Configuring proxy routes from: {}", appConfig.getProxies());
         
-        if (appConfig.getProxies() == null || appConfig.getProxies().isEmpty()) {
+        // The ingress route is built even without proxies, so a later reload can add some
+        var proxies = Objects.requireNonNullElse(appConfig.getProxies(), Map.<String, ProxyConfig>of());
+        if (proxies.isEmpty()) {
             log.warn("No proxies configured! Check your configuration under concierge.proxies");
-            return;
         }
-        appConfig.getProxies().forEach(this::configureProxyRoute);
+        
+        cacheRefresher = new CacheRefresher(responseCache, getContext().createProducerTemplate(), resilience, bulkheads,
+            compression, metrics);
+        var proxyRoutes = new ArrayList<ProxyRoute>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            if (proxyConfig.isEnabled()) {
+                proxyRoutes.add(proxyRoute(proxyName, proxyConfig));
+            } else {
+                log.info("Skipping disabled proxy route for {}", proxyName);
+            }
+        });
+        routeTable = new ProxyRouteTable(proxyRoutes);
+        
+        // Requests refused before reaching the backend get a plain status instead of an error page
+        onException(ProxyRejectedException.class)
+            .handled(true)
+            .process(this::rejectRequest);
+        
+        configureIngressRoute(proxyRoutes);
+        log.info("Serving {} proxies from route {}", routeTable.size(), INGRESS_ROUTE_ID);
+    }
+    
+    /**
+     * Swaps in the routes of a new proxy configuration. Proxies listed in changed get fresh settings
+     * and endpoints, the others keep theirs. Returns the routes no longer served, which may still
+     * have exchanges in flight.
+     */
+    synchronized List<ProxyRoute> reload(Map<String, ProxyConfig> proxies, Set<String> changed) {
+        var current = routeTable;
+        var proxyRoutes = new ArrayList<ProxyRoute>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            if (proxyConfig.isEnabled()) {
+                var existing = changed.contains(proxyName) ? null : current.get(proxyName);
+                proxyRoutes.add(existing != null ? existing : proxyRoute(proxyName, proxyConfig));
+            }
+        });
+        proxyRoutes.stream()
+            .filter(proxyRoute -> proxyRoute.retry() != null && !retryClauses.contains(proxyRoute.retry()))
+            .forEach(proxyRoute -> log.warn("Backoff of {} changed to {}, retrying with the default backoff until restart",
+                proxyRoute.name(), proxyRoute.retry()));
+        
+        routeTable = new ProxyRouteTable(proxyRoutes);
+        return current.routes().stream()
+            .filter(proxyRoute -> !proxyRoutes.contains(proxyRoute))
+            .toList();
+    }
+    
+    /**
+     * Removes the backend endpoints of drained routes that no current route uses anymore.
+     */
+    void removeEndpoints(List<ProxyRoute> drained) throws Exception {
+        var inUse = routeTable.routes().stream().flatMap(ProxyRoute::backendUris).collect(Collectors.toSet());
+        var unused = drained.stream().flatMap(ProxyRoute::backendUris)
+            .filter(backendUri -> !inUse.contains(backendUri))
+            .collect(Collectors.toSet());
+        for (var backendUri : unused) {
+            var endpoint = getContext().hasEndpoint(backendUri);
+            if (endpoint != null) {
+                getContext().removeEndpoint(endpoint);
+            }
+        }
+    }
+    
+    /**
+     * Resolves the settings of one proxy and its backend endpoint. The endpoint is created now,
+     * so a bad target fails startup and the endpoint is not subject to dynamic endpoint eviction.
+     */
+    private ProxyRoute proxyRoute(String proxyName, ProxyConfig proxyConfig) {
+        var backendUri = backendEndpointUri(proxyConfig) + connectionPools.endpointOptions(getContext(), proxyName);
+        getContext().getEndpoint(backendUri);
+        
+        var retry = resilience.isEnabled(proxyName)
+            ? new RetryPolicy(proxyConfig.getResilience().getDelay(), proxyConfig.getResilience().getDelayFactor())
+            : null;
+        var soap = proxyConfig.getSoap().isEnabled();
+        var operationBackendUris = new HashMap<String, String>();
+        if (soap) {
+            proxyConfig.getSoap().getOperationTargets().forEach((operation, target) -> {
+                var operationUri = backendEndpointUri(proxyConfig, target) + connectionPools.endpointOptions(getContext(), proxyName);
+                getContext().getEndpoint(operationUri);
+                operationBackendUris.put(operation, operationUri);
+            });
+        }
+        var targetBackendUris = new HashMap<String, String>();
+        if (proxyConfig.getTargets().size() > 1) {
+            for (var target : proxyConfig.getTargets()) {
+                var targetUri = backendEndpointUri(proxyConfig, target.getUrl()) + connectionPools.endpointOptions(getContext(), proxyName);
+                getContext().getEndpoint(targetUri);
+                targetBackendUris.put(target.getUrl(), targetUri);
+            }
+        }
+        log.info("Configuring proxy route for {}, target: {}, streaming: {}, soap: {}",
+            proxyName, targetBackendUris.isEmpty() ? proxyConfig.primaryTarget() : targetBackendUris.keySet(),
+            proxyConfig.isStreaming(), soap);
+        return new ProxyRoute(proxyName, proxyConfig.primaryTarget(), backendUri, proxyConfig.isStreaming(), retry,
+            soap, Map.copyOf(operationBackendUris), Map.copyOf(targetBackendUris), HeaderPolicy.of(proxyConfig.getHeaders(), !soap));
+    }
+    
+    /**
+     * Builds the single route serving every proxy. Each request is resolved to its proxy through
+     * the route table, then goes through the same pipeline with that proxy's settings.
+     */
+    private void configureIngressRoute(List<ProxyRoute> proxyRoutes) {
+        var route = from("platform-http:/proxy?matchOnUriPrefix=true")
+            .routeId(INGRESS_ROUTE_ID)
+            // Streaming proxies keep the raw request stream, the others buffer it once past the rate limits
+            .noStreamCaching();
+        
+        // Failed backend calls are retried with exponential backoff, scheduled instead of sleeping on the request thread.
+        // Redelivery settings belong to the clause, so there is one clause per distinct policy rather than per proxy.
+        retryClauses = proxyRoutes.stream().map(ProxyRoute::retry).filter(Objects::nonNull).collect(Collectors.toSet());
+        for (var policy : retryClauses) {
+            onBackendFailure(route, policy,
+                exchange -> ProxyRoute.of(exchange) != null && policy.equals(ProxyRoute.of(exchange).retry()));
+        }
+        // Clauses cannot be added to a running route, so policies introduced by a reload fall back to the defaults
+        var defaults = new ResilienceConfig();
+        onBackendFailure(route, new RetryPolicy(defaults.getDelay(), defaults.getDelayFactor()),
+            exchange -> ProxyRoute.of(exchange) != null && ProxyRoute.of(exchange).retry() != null);
+        
+        // The backend endpoint comes from the resolved proxy; every endpoint already exists, so this only picks one.
+        // Not optimised, as that would move a target's own base path into the CamelHttpPath header.
+        var backendCall = new ToDynamicDefinition("${exchangeProperty." + BACKEND_URI + "}")
+            // Headroom for proxies added by later reloads
+            .cacheSize(Math.max(routeTable.size() * 2, 100))
+            .allowOptimisedComponents(false);
+        
+        var backend = route
+            .process(this::dispatch)
+            // Refuse requests over the proxy's rate limits before doing anything else for them, reading their body included
+            .process(exchange -> rateLimiter.acquire(proxyName(exchange), exchange))
+            .process(ProxyRouter::bufferBody)
+            // Track the exchange before its request headers are rewritten
+            .process(exchange -> metrics.start(proxyName(exchange), exchange))
+            // The header policy may drop the priority header, read it first
+            .process(exchange -> bulkheads.capturePriority(proxyName(exchange), exchange))
+            .process(ProxyRouter::extractPath)
+            .process(exchange -> compression.captureAcceptEncoding(proxyName(exchange), exchange))
+            // SOAP requests are routed, and possibly cached, by their operation
+            .process(this::routeSoapOperation)
+            // Serve from the proxy's cache region when possible
+            .process(exchange -> responseCache.lookup(proxyName(exchange), exchange))
+            // On a miss, share the backend call of an identical request already in flight
+            .process(exchange -> coalescer.join(proxyName(exchange), exchange))
+            .choice()
+                .when(PredicateBuilder.or(
+                        exchangeProperty(ResponseCache.CACHE_HIT).isEqualTo(true),
+                        exchangeProperty(RequestCoalescer.COALESCED).isEqualTo(true)))
+                    // A stale entry was served, refresh it without making the client wait
+                    .process(exchange -> cacheRefresher.refreshIfStale(proxyName(exchange), exchange.getProperty(BACKEND_URI, String.class), exchange))
+                    .process(exchange -> compression.negotiate(proxyName(exchange), exchange))
+                    .process(exchange -> accessLog.record(proxyName(exchange), exchange))
+                .otherwise()
+                    // Path and query travel as headers so the backend endpoint stays the same for every request
+                    .process(ProxyRouter::setBackendPath)
+                    // Ask the backend for an encoding that can be passed through or decoded here
+                    .process(exchange -> compression.prepareBackendRequest(proxyName(exchange), exchange))
+                    // Hold a concurrency permit for this proxy until the exchange completes
+                    .process(exchange -> bulkheads.acquire(proxyName(exchange), exchange))
+                    // Fail fast while the backend's circuit is open
+                    .process(exchange -> acquireCircuitPermission(proxyName(exchange), exchange))
+                    // Pick the least loaded of two random targets when the proxy has several
+                    .process(this::selectTarget)
+                    .process(metrics::backendStarted)
+                    .process(bulkheads::attemptStarted)
+                    // Slow GETs of hedged proxies are sent twice, the first answer is kept
+                    .process(hedging::call);
+        // Only requests the hedging did not answer go through the regular backend call
+        var regularCall = new FilterDefinition(exchange -> !BackendHedging.answered(exchange));
+        regularCall.addOutput(backendCall);
+        backend.addOutput(regularCall);
+        backend
+                    .process(bulkheads::attemptCompleted)
+                    .process(exchange -> backendTargets.recordResponse(proxyName(exchange), exchange))
+                    .process(exchange -> metrics.backendCompleted(proxyName(exchange), exchange))
+                    .process(exchange -> resilience.recordSuccess(proxyName(exchange), exchange))
+                    // Responses replayed to other clients are compressed once, here, rather than on each replay
+                    .process(exchange -> compression.encodeShared(proxyName(exchange), exchange))
+                    .process(exchange -> responseCache.store(proxyName(exchange), exchange))
+                    .process(coalescer::complete)
+                    // Cached and shared responses keep the backend's encoding, each client gets its own
+                    .process(exchange -> compression.negotiate(proxyName(exchange), exchange))
+                    .process(exchange -> accessLog.record(proxyName(exchange), exchange))
+            .end();
     }
     
-    private void configureProxyRoute(String proxyName, ProxyConfig proxyConfig) {
-        if (!proxyConfig.isEnabled()) {
-            log.info("Skipping disabled proxy route for {}", proxyName);
+    private void onBackendFailure(RouteDefinition route, RetryPolicy policy, Predicate applies) {
+        route.onException(HttpOperationFailedException.class, IOException.class)
+            .onWhen(applies)
+            .onExceptionOccurred(this::onAttemptFailed)
+            // Runs after the backoff, right before the attempt is sent again
+            .onRedelivery(bulkheads::attemptStarted)
+            .retryWhile(exchange -> resilience.shouldRetry(proxyName(exchange), exchange))
+            .redeliveryDelay(policy.delay().toMillis())
+            .useExponentialBackOff()
+            .backOffMultiplier(policy.delayFactor())
+            .asyncDelayedRedelivery()
+            .handled(true)
+            .process(this::backendFailureResponse);
+    }
+    
+    /**
+     * Resolves the proxy addressed by the request and attaches its settings to the exchange.
+     */
+    private void dispatch(Exchange exchange) {
+        var requestUri = exchange.getIn().getHeader(Exchange.HTTP_URI, String.class);
+        var proxyRoute = routeTable.resolve(requestUri);
+        if (proxyRoute == null) {
+            throw new ProxyRejectedException(404, "No proxy configured for " + requestUri);
+        }
+        exchange.setProperty(ProxyRoute.PROPERTY, proxyRoute);
+        exchange.setProperty("proxyName", proxyRoute.name());
+        exchange.setProperty(BACKEND_URI, proxyRoute.backendUri());
+        // Counted so a route replaced by a reload knows when its last exchange is done
+        proxyRoute.inFlight().incrementAndGet();
+        exchange.getExchangeExtension().addOnCompletion(IN_FLIGHT_RELEASE);
+    }
+    
+    /**
+     * Reads the request body of non-streaming proxies once, so retries and captures can read it again
+     */
+    private static void bufferBody(Exchange exchange) {
+        if (!ProxyRoute.of(exchange).streaming()) {
+            var body = exchange.getIn().getBody(byte[].class);
+            if (body != null) {
+                exchange.getIn().setBody(body);
+            }
+        }
+    }
+    
+    /**
+     * Records a failed backend attempt, and sends the retry, if any, to another target when the proxy has several
+     */
+    private void onAttemptFailed(Exchange exchange) {
+        var proxyName = proxyName(exchange);
+        bulkheads.attemptCompleted(exchange);
+        resilience.recordFailure(proxyName, exchange);
+        var next = backendTargets.recordFailure(proxyName, exchange);
+        if (next != null) {
+            useTarget(exchange, next);
+        }
+    }
+    
+    private void selectTarget(Exchange exchange) {
+        var proxyRoute = ProxyRoute.of(exchange);
+        var operation = exchange.getProperty(SoapOperations.OPERATION, String.class);
+        // An operation with a target of its own is not balanced
+        if (proxyRoute.targetBackendUris().isEmpty()
+                || (operation != null && proxyRoute.operationBackendUris().containsKey(operation))) {
             return;
         }
-
-        var proxyBasePath = PROXY_PATH_PREFIX + proxyName;
-        var targetUrl = proxyConfig.getTarget();
-        
-        log.info("Configuring proxy route for {}, target: {}", proxyName, targetUrl);
-        
-        // Create the route for this proxy
-        from("platform-http:" + proxyBasePath + "?matchOnUriPrefix=true")
-            .routeId("proxy-" + proxyName)
-            .process(exchange -> extractPath(exchange, proxyBasePath, targetUrl))
-            // Copy the HTTP method from CamelHttpMethod header
-            .setHeader(Exchange.HTTP_METHOD, header("CamelHttpMethod"))
-            // Set content type for JSON handling
-            .setHeader(Exchange.CONTENT_TYPE, constant("application/json"))
-            // Set accept header for JSON responses
-            .setHeader("Accept", constant("application/json"))
-            // Remove Camel-specific headers except the ones we need
-            .removeHeaders("Camel*", "CamelHttpMethod")
-            .toD("${exchangeProperty.targetUrl}${exchangeProperty.remainingPath}?bridgeEndpoint=true&throwExceptionOnFailure=false")
-            .process(this::logResponse);
+        var target = backendTargets.select(proxyRoute.name(), exchange);
+        if (target != null) {
+            useTarget(exchange, target);
+        }
+    }
+    
+    private static void useTarget(Exchange exchange, BackendTargets.Target target) {
+        var proxyRoute = ProxyRoute.of(exchange);
+        exchange.setProperty(BACKEND_URI, proxyRoute.targetBackendUris().getOrDefault(target.url(), proxyRoute.backendUri()));
+        exchange.setProperty("targetUrl", target.url());
+    }
+    
+    private void routeSoapOperation(Exchange exchange) {
+        var proxyRoute = ProxyRoute.of(exchange);
+        if (proxyRoute.soap()) {
+            var operation = soapOperations.inspect(proxyRoute.name(), exchange);
+            exchange.setProperty(BACKEND_URI, proxyRoute.backendUri(operation));
+        }
+    }
+    
+    static void setBackendPath(Exchange exchange) {
+        var in = exchange.getIn();
+        in.setHeader(Exchange.HTTP_PATH, exchange.getProperty("remainingPath"));
+        in.setHeader(Exchange.HTTP_QUERY, exchange.getProperty("rawQuery"));
+    }
+    
+    private static String proxyName(Exchange exchange) {
+        return exchange.getProperty("proxyName", String.class);
     }
     
 
     /**
-     * Logs response details including status code and target URL
+     * Turns a {@link ProxyRejectedException} into the response sent back to the client
      */
-    private void logResponse(Exchange exchange) {
-        var responseCode = exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
-        // Using a modern switch expression for status description
-        var status = switch(Integer.compare(responseCode, 200)) {
-            case 0 -> "OK";
-            default -> "ERROR";
-        };
-        
-        log.info("[RESPONSE] {} {} (from: {}{})", 
-            responseCode,
-            status,
+    private void rejectRequest(Exchange exchange) {
+        var rejection = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, ProxyRejectedException.class);
+        var message = exchange.getMessage();
+        message.removeHeaders("*");
+        message.setHeader(Exchange.HTTP_RESPONSE_CODE, rejection.getStatus());
+        message.setHeader(Exchange.CONTENT_TYPE, "text/plain");
+        if (rejection.getRetryAfter() != null) {
+            message.setHeader("Retry-After", rejection.getRetryAfter().toSeconds());
+        }
+        message.setBody(rejection.getMessage());
+        
+        var proxyName = proxyName(exchange);
+        if (proxyName != null) {
+            accessLog.record(proxyName, exchange);
+        }
+    }
+
+    private void acquireCircuitPermission(String proxyName, Exchange exchange) {
+        if (!resilience.tryAcquirePermission(proxyName, exchange)) {
+            throw new ProxyRejectedException(503, "Backend " + proxyName + " is unavailable (circuit open)");
+        }
+    }
+
+    /**
+     * Answers with the backend's own error response once retries are exhausted,
+     * or with 502 when the backend could not be reached at all
+     */
+    private void backendFailureResponse(Exchange exchange) {
+        var cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+        var redeliveries = exchange.getMessage().getHeader(Exchange.REDELIVERY_COUNTER, 0, Integer.class);
+        var message = exchange.getMessage();
+        message.removeHeaders("*");
+        var proxyName = exchange.getProperty("proxyName", String.class);
+        
+        var clientError = cause instanceof HttpOperationFailedException failure && failure.getStatusCode() < 500;
+        
+        // A stale cache entry may stand in for a failing backend, never for a client error
+        var servedStale = !clientError && responseCache.serveStaleOnError(proxyName, exchange);
+        if (servedStale) {
+            log.debug("Serving stale cache entry for {}", exchange.getProperty("remainingPath"));
+            compression.negotiate(proxyName, exchange);
+        } else if (cause instanceof HttpOperationFailedException failure) {
+            failure.getResponseHeaders().forEach((name, value) -> {
+                if (!"Transfer-Encoding".equalsIgnoreCase(name) && !"Connection".equalsIgnoreCase(name)) {
+                    message.setHeader(name, value);
+                }
+            });
+            message.setHeader(Exchange.HTTP_RESPONSE_CODE, failure.getStatusCode());
+            message.setBody(failure.getResponseBody());
+        } else {
+            message.setHeader(Exchange.HTTP_RESPONSE_CODE, 502);
+            message.setHeader(Exchange.CONTENT_TYPE, "text/plain");
+            message.setBody("Backend unreachable: " + cause.getMessage());
+        }
+        metrics.backendCompleted(proxyName, exchange);
+        
+        log.warn("[RESPONSE] {} {} after {} redeliveries (from: {}{})", 
+            message.getHeader(Exchange.HTTP_RESPONSE_CODE),
+            servedStale ? "STALE" : "ERROR",
+            redeliveries,
             exchange.getProperty("targetUrl"),
             exchange.getProperty("remainingPath"));
+        accessLog.record(proxyName, exchange);
+    }
+
+    /**
+     * Builds the single backend endpoint URI used for every request of a proxy.
+     * In streaming mode the backend response stays a raw stream that is copied to the client.
+     * With resilience enabled, error statuses are raised as exceptions so they can be retried.
+     */
+    static String backendEndpointUri(ProxyConfig proxyConfig) {
+        return backendEndpointUri(proxyConfig, proxyConfig.primaryTarget());
+    }
+    
+    // Same options for another target of the proxy, such as a SOAP operation served elsewhere
+    static String backendEndpointUri(ProxyConfig proxyConfig, String target) {
+        var uri = target + "?bridgeEndpoint=true"
+            + "&throwExceptionOnFailure=" + proxyConfig.getResilience().isEnabled()
+            // 304 answers our own cache revalidation, it is not a failure
+            + "&okStatusCodeRange=200-299,304";
+        return proxyConfig.isStreaming() ? uri + "&disableStreamCache=true" : uri;
     }
 
-    private void extractPath(Exchange exchange, String proxyBasePath, String targetUrl) {
+    static void extractPath(Exchange exchange) {
+        var proxyRoute = ProxyRoute.of(exchange);
         var requestUri = exchange.getIn().getHeader("CamelHttpUri", String.class);
         var httpMethod = exchange.getIn().getHeader("CamelHttpMethod", String.class);
         var rawQuery = exchange.getIn().getHeader("CamelHttpRawQuery", String.class);
         
-        // Extract the remaining path
-        var remainingPath = extractRemainingPath(requestUri, proxyBasePath);
+        // Extract the remaining path, the route table already matched the proxy prefix
+        var remainingPath = ProxyRouteTable.remainingPath(requestUri, proxyRoute);
         
-        // Add query parameters if present - using string concatenation instead of StringBuilder for simple cases
-        if (rawQuery != null && !rawQuery.isEmpty()) {
-            remainingPath = remainingPath + "?" + rawQuery;
-            log.info("[REQUEST] Query parameters: {} for path: {}", rawQuery, remainingPath.substring(0, remainingPath.indexOf('?')));
+        // Keep query parameters apart from the path, they are sent as the CamelHttpQuery header
+        if (rawQuery != null && rawQuery.isEmpty()) {
+            rawQuery = null;
         }
         
-        log.info("[PROXY] {} {} -> {}{}", httpMethod, requestUri, targetUrl, remainingPath);
-        
         // Set properties for the outgoing exchange
+        exchange.setProperty("httpMethod", httpMethod);
         exchange.setProperty("remainingPath", remainingPath);
-        exchange.setProperty("targetUrl", targetUrl);
+        exchange.setProperty("rawQuery", rawQuery);
+        exchange.setProperty("targetUrl", proxyRoute.targetUrl());
         
-        // Preserve important headers, removing those that might interfere
+        // Rewrite the request headers for the backend, once, before the cache and coalescer capture them
         preserveHeaders(exchange);
         
-        // Log request headers for debugging - using pattern matching for filtering
-        exchange.getIn().getHeaders().forEach((key, value) -> {
-            if (key instanceof String k && (k.startsWith("Camel") || k.startsWith("Content") || k.startsWith("Accept"))) {
-                log.debug("[HEADER] {} = {}", key, value);
-            }
-        });
-    }
-    
-    /**
-     * Preserves important headers for the proxied request.
-     */
-    private void preserveHeaders(Exchange exchange) {
-        // Headers to remove (these will be set by Camel or the target service)
-        // Using Array for header names
-        var headersToRemove = new String[] {
-            "CamelHttpUri", "CamelHttpUrl", 
-            "Host", "Content-Length", "Connection", "Transfer-Encoding"
-        };
-        
-        // Remove each header
-        for (var header : headersToRemove) {
-            exchange.getIn().removeHeader(header);
-        }
-        
-        // Ensure these important headers are preserved or set
-        // Using putIfAbsent pattern from modern Java
-        var headers = exchange.getIn().getHeaders();
-        if (!headers.containsKey("Accept")) {
-            exchange.getIn().setHeader("Accept", "application/json");
+        // Request details and headers are only walked when someone is actually reading DEBUG
+        if (log.isDebugEnabled()) {
+            log.debug("[PROXY] {} {} -> {}{}{}", httpMethod, requestUri, proxyRoute.targetUrl(), remainingPath,
+                rawQuery != null ? "?" + rawQuery : "");
+            exchange.getIn().getHeaders().forEach((key, value) -> {
+                if (key instanceof String k && (k.startsWith("Camel") || k.startsWith("Content") || k.startsWith("Accept"))) {
+                    log.debug("[HEADER] {} = {}", key, value);
+                }
+            });
         }
-        
-        // Add a custom header to identify the proxy
-        exchange.getIn().setHeader("X-Forwarded-By", "Concierge-Proxy");
     }
     
     /**
-     * Extracts the part of the path that follows the proxy base path.
+     * Rewrites the request headers for the backend with the proxy's {@link HeaderPolicy}.
      */
-    private String extractRemainingPath(String requestUri, String proxyBasePath) {
-        // Using Optional to handle null safely
-        return Optional.ofNullable(requestUri)
-            .filter(uri -> uri.startsWith(proxyBasePath))
-            .map(uri -> {
-                var path = uri.substring(proxyBasePath.length());
-                return path.isEmpty() ? "/" : path;
-            })
-            .orElse("/");
-    }
-    
- 
-}
\ No newline at end of file
+    static void preserveHeaders(Exchange exchange) {
+        ProxyRoute.of(exchange).headerPolicy().apply(exchange.getIn());
+    }
+}
@@ -0,0 +1,221 @@
+package io.github.jeanbottein.concierge.features.resilience;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.http.base.HttpOperationFailedException;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ResilienceConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-proxy Resilience4j circuit breaker and retry policy around the backend call,
+ * built from each proxy's {@link ResilienceConfig}.
+ */
+@Slf4j
+@Component
+public class BackendResilience {
+
+    private static final String CALL_STARTED = "backendCallStarted";
+    // Set while the permit of the current call has no recorded outcome
+    private static final String PERMIT_PENDING = "backendCallPermitPending";
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    private record Policy(ResilienceConfig config, CircuitBreaker circuitBreaker, int maxAttempts, boolean retries,
+                          List<Meter> meters) {}
+
+    private final MeterRegistry meterRegistry;
+    private volatile Map<String, Policy> policies = Map.of();
+
+    public BackendResilience(AppConfig appConfig, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        reload(appConfig.getProxies());
+    }
+
+    /**
+     * Applies a new proxy configuration. A proxy whose resilience settings did not change keeps
+     * its circuit breaker and state; a replaced breaker starts closed.
+     */
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Policy>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var resilience = proxyConfig.getResilience();
+            if (proxyConfig.isEnabled() && resilience.isEnabled()) {
+                var current = policies.get(proxyName);
+                // A streamed request body cannot be replayed, so streaming proxies never retry
+                var retries = !proxyConfig.isStreaming();
+                if (current != null && current.config().equals(resilience) && current.retries() == retries) {
+                    configured.put(proxyName, current);
+                    return;
+                }
+                if (current != null) {
+                    current.meters().forEach(meterRegistry::remove);
+                }
+                var circuitBreaker = CircuitBreaker.of(proxyName, CircuitBreakerConfig.custom()
+                    .failureRateThreshold(resilience.getFailureRateThreshold())
+                    .slidingWindowSize(resilience.getSlidingWindowSize())
+                    .minimumNumberOfCalls(resilience.getMinimumNumberOfCalls())
+                    .waitDurationInOpenState(resilience.getOpenStateDuration())
+                    .permittedNumberOfCallsInHalfOpenState(resilience.getHalfOpenCalls())
+                    .build());
+                circuitBreaker.getEventPublisher().onStateTransition(event ->
+                    log.warn("Circuit breaker for {}: {}", proxyName, event.getStateTransition()));
+                var meters = registerMetrics(proxyName, circuitBreaker);
+                configured.put(proxyName, new Policy(resilience, circuitBreaker, resilience.getMaxAttempts(), retries, meters));
+            }
+        });
+        policies.forEach((proxyName, policy) -> {
+            if (!configured.containsKey(proxyName)) {
+                policy.meters().forEach(meterRegistry::remove);
+            }
+        });
+        this.policies = Map.copyOf(configured);
+    }
+
+    // Gauges hold on to the breaker they were registered with, so they are removed along with it
+    private List<Meter> registerMetrics(String proxyName, CircuitBreaker circuitBreaker) {
+        var state = Gauge.builder("concierge.proxy.circuitbreaker.state", circuitBreaker, cb -> cb.getState().getOrder())
+            .description("Circuit breaker state (0 closed, 1 open, 2 half-open, 3 disabled, 4 forced open, 5 metrics only)")
+            .tag("proxy", proxyName)
+            .register(meterRegistry);
+        var failureRate = Gauge.builder("concierge.proxy.circuitbreaker.failure.rate", circuitBreaker, cb -> cb.getMetrics().getFailureRate())
+            .tag("proxy", proxyName)
+            .register(meterRegistry);
+        var notPermitted = FunctionCounter.builder("concierge.proxy.circuitbreaker.not.permitted", circuitBreaker, cb -> cb.getMetrics().getNumberOfNotPermittedCalls())
+            .tag("proxy", proxyName)
+            .register(meterRegistry);
+        return List.of(state, failureRate, notPermitted);
+    }
+
+    public boolean isEnabled(String proxyName) {
+        return policies.containsKey(proxyName);
+    }
+
+    /**
+     * Asks the circuit breaker for a permit before calling the backend.
+     * Returns false while the circuit is open, so the caller can fail fast.
+     */
+    public boolean tryAcquirePermission(String proxyName, Exchange exchange) {
+        var policy = policies.get(proxyName);
+        if (policy == null) {
+            return true;
+        }
+        if (!policy.circuitBreaker().tryAcquirePermission()) {
+            return false;
+        }
+        holdPermit(policy, exchange);
+        return true;
+    }
+
+    /**
+     * Records a backend call that returned a response, anything below 500 counts as a success.
+     */
+    public void recordSuccess(String proxyName, Exchange exchange) {
+        var policy = policies.get(proxyName);
+        if (policy == null) {
+            return;
+        }
+        permitUsed(exchange);
+        var status = exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, 0, Integer.class);
+        if (status >= 500) {
+            policy.circuitBreaker().onError(elapsedNanos(exchange), TimeUnit.NANOSECONDS,
+                new IOException("Backend answered " + status));
+        } else {
+            policy.circuitBreaker().onSuccess(elapsedNanos(exchange), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records a backend call that failed with an exception. Client errors raised as
+     * {@link HttpOperationFailedException} are not held against the backend.
+     */
+    public void recordFailure(String proxyName, Exchange exchange) {
+        var policy = policies.get(proxyName);
+        if (policy == null) {
+            return;
+        }
+        permitUsed(exchange);
+        var cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+        if (cause instanceof HttpOperationFailedException failure && failure.getStatusCode() < 500) {
+            policy.circuitBreaker().onSuccess(elapsedNanos(exchange), TimeUnit.NANOSECONDS);
+        } else {
+            policy.circuitBreaker().onError(elapsedNanos(exchange), TimeUnit.NANOSECONDS, cause);
+        }
+    }
+
+    /**
+     * Decides whether a failed backend call is retried: only idempotent methods, only on
+     * server errors or I/O failures, within maxAttempts and while the circuit lets calls through.
+     */
+    public boolean shouldRetry(String proxyName, Exchange exchange) {
+        var policy = policies.get(proxyName);
+        if (policy == null || !policy.retries()) {
+            return false;
+        }
+
+        var method = exchange.getIn().getHeader(Exchange.HTTP_METHOD, String.class);
+        var redeliveries = exchange.getIn().getHeader(Exchange.REDELIVERY_COUNTER, 0, Integer.class);
+        var cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+        var retryable = cause instanceof IOException
+            || (cause instanceof HttpOperationFailedException failure && failure.getStatusCode() >= 500);
+
+        if (!retryable || !IDEMPOTENT_METHODS.contains(method) || redeliveries + 1 >= policy.maxAttempts()) {
+            return false;
+        }
+        if (!policy.circuitBreaker().tryAcquirePermission()) {
+            return false;
+        }
+        holdPermit(policy, exchange);
+        return true;
+    }
+
+    /**
+     * Tracks a permit until its call is recorded. A call ended by anything else, such as an internal
+     * error or a client gone away, says nothing about the backend: its permit is handed back when the
+     * exchange completes, or a half-open breaker would run out of trial calls for good.
+     */
+    private static void holdPermit(Policy policy, Exchange exchange) {
+        exchange.setProperty(CALL_STARTED, System.nanoTime());
+        var pending = new AtomicBoolean(true);
+        exchange.setProperty(PERMIT_PENDING, pending);
+        var circuitBreaker = policy.circuitBreaker();
+        exchange.getExchangeExtension().addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange completed) {
+                if (pending.getAndSet(false)) {
+                    circuitBreaker.releasePermission();
+                }
+            }
+        });
+    }
+
+    // Marks the current permit as used by a recorded outcome
+    private static void permitUsed(Exchange exchange) {
+        var pending = exchange.getProperty(PERMIT_PENDING, AtomicBoolean.class);
+        if (pending != null) {
+            pending.set(false);
+        }
+    }
+
+    private static long elapsedNanos(Exchange exchange) {
+        var started = exchange.getProperty(CALL_STARTED, Long.class);
+        return started == null ? 0 : System.nanoTime() - started;
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.jeanbottein.concierge.features.soap;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Pulls the operation and a few key values out of a SOAP envelope with StAX, without building
+ * a DOM. Reading stops as soon as the operation element is closed or every key element was seen,
+ * so large payloads after the keys are never parsed. The Header is only read for its key elements
+ * and to tell whether it carries anything, such as identity or security tokens.
+ */
+final class SoapEnvelopeReader {
+
+    /**
+     * What was read from an envelope: the local name of the first element in the Body, the text
+     * of the first occurrence of each key element inside it, whether the Header holds any element,
+     * and the text of the first occurrence of each header key element inside the Header.
+     */
+    record Envelope(String operation, Map<String, String> keys, boolean header, Map<String, String> headerKeys) {}
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private SoapEnvelopeReader() {
+    }
+
+    private static XMLInputFactory createFactory() {
+        var factory = XMLInputFactory.newFactory();
+        // Envelopes come from clients, never resolve DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Returns null when the body is not a SOAP envelope with an element in its Body.
+     */
+    static Envelope read(byte[] body, Collection<String> keyElements, Collection<String> headerKeyElements) {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(body));
+            if (!nextElement(reader) || !"Envelope".equals(reader.getLocalName())) {
+                return null;
+            }
+            // Read the Header, if any, up to the Body
+            var header = false;
+            var headerKeys = new HashMap<String, String>();
+            while (nextElement(reader) && !"Body".equals(reader.getLocalName())) {
+                if ("Header".equals(reader.getLocalName())) {
+                    header |= readHeader(reader, headerKeyElements, headerKeys);
+                } else {
+                    skipElement(reader);
+                }
+            }
+            if (!reader.isStartElement() || !nextElement(reader)) {
+                return null;
+            }
+
+            var operation = reader.getLocalName();
+            var keys = new HashMap<String, String>();
+            var depth = 1;
+            while (depth > 0 && keys.size() < keyElements.size() && reader.hasNext()) {
+                var event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    var name = reader.getLocalName();
+                    if (keyElements.contains(name) && !keys.containsKey(name)) {
+                        // Leaves the reader on the end tag, so the depth does not change
+                        keys.put(name, reader.getElementText().trim());
+                    } else {
+                        depth++;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return new Envelope(operation, keys, header, headerKeys);
+        } catch (XMLStreamException e) {
+            return null;
+        } finally {
+            close(reader);
+        }
+    }
+
+    // Moves to the next start tag at the current level, false when the parent ends first
+    private static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            var event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Collects the header key elements up to the end of the Header, true when it holds any element
+    private static boolean readHeader(XMLStreamReader reader, Collection<String> headerKeyElements,
+                                      Map<String, String> headerKeys) throws XMLStreamException {
+        var entries = false;
+        var depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            var event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                entries = true;
+                var name = reader.getLocalName();
+                if (headerKeyElements.contains(name) && !headerKeys.containsKey(name)) {
+                    headerKeys.put(name, reader.getElementText().trim());
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return entries;
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        var depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            var event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // Nothing left to release for an in-memory body
+        }
+    }
+}
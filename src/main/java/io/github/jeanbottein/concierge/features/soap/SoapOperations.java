@@ -0,0 +1,132 @@
+package io.github.jeanbottein.concierge.features.soap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.camel.Exchange;
+import org.springframework.stereotype.Component;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Identifies the operation of requests to SOAP proxies, so they can be routed and cached by it.
+ *
+ * The operation is the first element of the envelope Body, read by {@link SoapEnvelopeReader}.
+ * Streaming proxies cannot read the body ahead of the backend, so they fall back to the last
+ * segment of the SOAPAction header and are never cached.
+ *
+ * A Header usually carries the caller's identity or security tokens, so envelopes with one are only
+ * cached when the proxy keys on header elements, whose values then take part in the key.
+ */
+@Slf4j
+@Component
+public class SoapOperations {
+
+    public static final String OPERATION = "soapOperation";
+
+    private record Settings(boolean streaming, Set<String> cacheableOperations, List<String> keyElements,
+                            List<String> headerKeyElements) {}
+
+    private volatile Map<String, Settings> settings = Map.of();
+
+    public SoapOperations(AppConfig appConfig) {
+        reload(appConfig.getProxies());
+    }
+
+    public synchronized void reload(Map<String, ProxyConfig> proxies) {
+        var configured = new HashMap<String, Settings>();
+        proxies.forEach((proxyName, proxyConfig) -> {
+            var soap = proxyConfig.getSoap();
+            if (proxyConfig.isEnabled() && soap.isEnabled()) {
+                if (proxyConfig.isStreaming() && !soap.getCacheableOperations().isEmpty()) {
+                    log.warn("{} is streaming, its SOAP operations are routed by SOAPAction and never cached", proxyName);
+                }
+                configured.put(proxyName, new Settings(proxyConfig.isStreaming(), Set.copyOf(soap.getCacheableOperations()),
+                    List.copyOf(soap.getKeyElements()), List.copyOf(soap.getHeaderKeyElements())));
+            }
+        });
+        this.settings = Map.copyOf(configured);
+    }
+
+    public boolean isEnabled(String proxyName) {
+        return settings.containsKey(proxyName);
+    }
+
+    /**
+     * Reads the operation of a SOAP request into {@link #OPERATION} and returns it, or null when the
+     * proxy is not a SOAP proxy or the operation cannot be told. Requests to cacheable operations
+     * also get their {@link ResponseCache#READ_ONLY_KEY}, unless their Header cannot be keyed on.
+     */
+    public String inspect(String proxyName, Exchange exchange) {
+        var proxySettings = settings.get(proxyName);
+        if (proxySettings == null || !"POST".equals(exchange.getIn().getHeader(Exchange.HTTP_METHOD, String.class))) {
+            return null;
+        }
+
+        var body = proxySettings.streaming() ? null : exchange.getIn().getBody(byte[].class);
+        var envelope = body == null || body.length == 0
+            ? null
+            : SoapEnvelopeReader.read(body, proxySettings.keyElements(), proxySettings.headerKeyElements());
+        var operation = envelope != null
+            ? envelope.operation()
+            : actionOperation(exchange.getIn().getHeader("SOAPAction", String.class));
+        if (operation == null) {
+            return null;
+        }
+        exchange.setProperty(OPERATION, operation);
+
+        if (envelope != null && proxySettings.cacheableOperations().contains(operation)
+                && (!envelope.header() || !proxySettings.headerKeyElements().isEmpty())) {
+            exchange.setProperty(ResponseCache.READ_ONLY_KEY, keyFor(exchange.getProperty("remainingPath", String.class),
+                operation, envelope.keys(), proxySettings.keyElements())
+                + headerKey(envelope.headerKeys(), proxySettings.headerKeyElements()));
+        }
+        return operation;
+    }
+
+    /**
+     * Builds a cache key from the path, the operation and the key element values, in configuration order.
+     */
+    static String keyFor(String remainingPath, String operation, Map<String, String> keys, List<String> keyElements) {
+        var key = new StringBuilder("SOAP ").append(remainingPath == null ? "/" : remainingPath)
+            .append('#').append(operation);
+        var separator = '?';
+        for (var element : keyElements) {
+            var value = keys.get(element);
+            if (value != null) {
+                key.append(separator).append(element).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Digests of the header key element values, in configuration order, so tokens never show up in keys.
+     */
+    static String headerKey(Map<String, String> headerKeys, List<String> headerKeyElements) {
+        var key = new StringBuilder();
+        for (var element : headerKeyElements) {
+            var value = headerKeys.get(element);
+            if (value != null) {
+                key.append(' ').append(element).append('=').append(ResponseCache.keyDigest(value));
+            }
+        }
+        return key.toString();
+    }
+
+    // SOAPAction is a quoted URI such as "http://example.org/webservice/GetProduct"
+    static String actionOperation(String soapAction) {
+        if (soapAction == null) {
+            return null;
+        }
+        var action = soapAction.replace("\"", "").trim();
+        var start = Math.max(action.lastIndexOf('/'), action.lastIndexOf('#')) + 1;
+        return start < action.length() ? action.substring(start) : null;
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.jeanbottein.concierge.app.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the native image hints cover configuration binding and Camel's reflective lookups.
+ */
+class NativeRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    NativeRuntimeHintsTest() {
+        new NativeRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    @DisplayName("Should register nested configuration classes for binding")
+    void shouldRegisterConfigurationClasses() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(AppConfig.CachingConfig.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(AppConfig.ConnectionPoolConfig.class).test(hints));
+    }
+
+    @Test
+    @DisplayName("Should register the Camel components used by proxy routes")
+    void shouldRegisterCamelComponents() {
+        assertTrue(RuntimeHintsPredicates.resource().forResource("META-INF/services/org/apache/camel/component/http").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+            .onType(org.apache.camel.component.http.HttpComponent.class)
+            .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)
+            .test(hints));
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.CacheStorage;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips of the response cache through a snapshot file.
+ */
+class CacheSnapshotTest {
+
+    private static final byte[] BODY = "{\"id\":1,\"title\":\"delectus aut autem\"}".repeat(20)
+        .getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("Should restore heap and off-heap entries saved by a previous run")
+    void shouldRestoreSavedEntries() {
+        // Given: Both regions hold an entry
+        var appConfig = appConfig();
+        var cache = responseCache(appConfig);
+        var response = new CachedResponse(200, Map.of("Content-Type", "application/json"), BODY);
+        cache.restore("serviceA", "GET /todos/1", response);
+        cache.restore("serviceB", "GET /todos/2", response);
+        var snapshot = directory.resolve("cache.snapshot");
+
+        // When: The cache is saved, then loaded into a new one
+        new CacheSnapshot(appConfig, cache, new MockEnvironment()).save(snapshot);
+        var restored = responseCache(appConfig);
+        new CacheSnapshot(appConfig, restored, new MockEnvironment()).load(snapshot);
+
+        // Then: Both entries are back, with their original storage time
+        var entries = entries(restored);
+        assertEquals(2, entries.size());
+        assertArrayEquals(BODY, entries.get("serviceA GET /todos/1").body());
+        assertEquals(response.storedAt(), entries.get("serviceA GET /todos/1").storedAt());
+        assertTrue(entries.containsKey("serviceB GET /todos/2"));
+    }
+
+    @Test
+    @DisplayName("Should skip blocks whose checksum does not match")
+    void shouldSkipCorruptBlocks() throws IOException {
+        var appConfig = appConfig();
+        var cache = responseCache(appConfig);
+        cache.restore("serviceA", "GET /todos/1", new CachedResponse(200, Map.of(), BODY));
+        var snapshot = directory.resolve("cache.snapshot");
+        new CacheSnapshot(appConfig, cache, new MockEnvironment()).save(snapshot);
+
+        // Flip one byte of the last entry's body
+        var bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(snapshot, bytes);
+        var restored = responseCache(appConfig);
+        new CacheSnapshot(appConfig, restored, new MockEnvironment()).load(snapshot);
+
+        assertTrue(entries(restored).isEmpty());
+    }
+
+    private static Map<String, CachedResponse> entries(ResponseCache cache) {
+        var entries = new HashMap<String, CachedResponse>();
+        cache.forEachEntry((proxyName, key, response) -> entries.put(proxyName + ' ' + key, response));
+        return entries;
+    }
+
+    private static ResponseCache responseCache(AppConfig appConfig) {
+        var connectionFactories = new StaticListableBeanFactory().getBeanProvider(RedisConnectionFactory.class);
+        return new ResponseCache(appConfig, new SimpleMeterRegistry(), new RedisResponseStore(appConfig, connectionFactories));
+    }
+
+    private static AppConfig appConfig() {
+        var heap = new ProxyConfig();
+        heap.getCaching().setEnabled(true);
+        var offHeap = new ProxyConfig();
+        offHeap.getCaching().setEnabled(true);
+        offHeap.getCaching().setStorage(CacheStorage.OFF_HEAP);
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", heap);
+        appConfig.getProxies().put("serviceB", offHeap);
+        return appConfig;
+    }
+}
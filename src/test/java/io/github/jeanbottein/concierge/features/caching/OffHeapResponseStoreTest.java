@@ -0,0 +1,83 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the compressed off-heap storage of cache regions.
+ */
+class OffHeapResponseStoreTest {
+
+    private static final byte[] BODY = "{\"id\":1,\"title\":\"delectus aut autem\"}".repeat(50)
+        .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    @DisplayName("Should hand out the compressed body to clients accepting gzip")
+    void shouldPassCompressedBodyThrough() {
+        var store = new OffHeapResponseStore(Caffeine.newBuilder(), 1_000_000);
+        store.put("GET /todos", new CachedResponse(200, Map.of("Content-Type", "application/json"), BODY));
+
+        var compressed = store.get("GET /todos", true);
+
+        assertEquals("gzip", compressed.headers().get("Content-Encoding"));
+        assertTrue(compressed.body().length < BODY.length);
+    }
+
+    @Test
+    @DisplayName("Should inflate the body for clients not accepting gzip")
+    void shouldInflateForIdentityClients() {
+        var store = new OffHeapResponseStore(Caffeine.newBuilder(), 1_000_000);
+        store.put("GET /todos", new CachedResponse(200, Map.of("Content-Type", "application/json"), BODY));
+
+        var plain = store.get("GET /todos", false);
+
+        assertNull(plain.headers().get("Content-Encoding"));
+        assertArrayEquals(BODY, plain.body());
+    }
+
+    @Test
+    @DisplayName("Should evict entries beyond the byte budget")
+    void shouldEvictByWeight() {
+        var store = new OffHeapResponseStore(Caffeine.newBuilder().executor(Runnable::run), 1_000);
+        for (int i = 0; i < 20; i++) {
+            store.put("GET /todos/" + i, new CachedResponse(200, Map.of(), new byte[200]));
+        }
+        store.cache().cleanUp();
+
+        assertTrue(store.cache().estimatedSize() < 20);
+    }
+
+    @Test
+    @DisplayName("Should reuse the direct memory of removed entries instead of allocating more")
+    void shouldBoundDirectMemoryUnderChurn() {
+        // Given: Bodies that do not compress, put far beyond the budget
+        var budget = 64 * 1024;
+        var store = new OffHeapResponseStore(Caffeine.newBuilder().executor(Runnable::run), budget);
+        var random = new Random(42);
+        byte[] last = null;
+        for (int i = 0; i < 1_000; i++) {
+            last = new byte[1_000];
+            random.nextBytes(last);
+            store.put("GET /todos/" + i, new CachedResponse(200, Map.of(), last));
+        }
+
+        // Then: Direct memory never exceeded the budget, and the newest body reads back intact
+        assertTrue(store.pool().allocatedBytes() <= budget);
+        assertArrayEquals(last, store.get("GET /todos/999", false).body());
+
+        // And: Every page comes back once the entries are gone
+        store.cache().invalidateAll();
+        assertEquals(0, store.pool().usedPages());
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contract test for the shared Redis cache tier against a throwaway Redis container.
+ * Skipped when Docker is not available.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Testcontainers(disabledWithoutDocker = true)
+class RedisResponseStoreTest {
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", REDIS::getHost);
+        registry.add("spring.data.redis.port", () -> REDIS.getMappedPort(6379));
+        registry.add("concierge.proxies.serviceA.caching.distributed", () -> "true");
+    }
+
+    @Autowired
+    private RedisResponseStore store;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private ObjectProvider<RedisConnectionFactory> connectionFactories;
+
+    @Test
+    @DisplayName("Should read back an entry written through the pipelined writer")
+    void shouldReadBackWrittenEntry() throws Exception {
+        var response = new CachedResponse(200, Map.of("Content-Type", "application/json"), "{\"id\":1}".getBytes());
+
+        store.put("serviceA", "GET /todos/1", response, Duration.ofMinutes(1));
+
+        // Writes are asynchronous, give the writer a moment to flush its batch
+        Optional<CachedResponse> shared = Optional.empty();
+        for (int i = 0; i < 50 && shared.isEmpty(); i++) {
+            shared = store.get("serviceA", "GET /todos/1").get(1, TimeUnit.SECONDS);
+            if (shared.isEmpty()) {
+                Thread.sleep(100);
+            }
+        }
+
+        assertTrue(shared.isPresent(), "Entry should be readable from Redis");
+        assertEquals(200, shared.get().status());
+        assertEquals("application/json", shared.get().headers().get("Content-Type"));
+        assertArrayEquals(response.body(), shared.get().body());
+    }
+
+    @Test
+    @DisplayName("Should notify other replicas when an entry is rewritten")
+    void shouldPublishInvalidationToOtherReplicas() throws Exception {
+        var invalidated = new CompletableFuture<String>();
+        store.onInvalidation((proxyName, key) -> invalidated.complete(proxyName + " " + key));
+
+        var otherReplica = new RedisResponseStore(appConfig, connectionFactories);
+        try {
+            // The subscription is established asynchronously; keep writing until it is seen
+            for (int i = 0; i < 50 && !invalidated.isDone(); i++) {
+                otherReplica.put("serviceA", "GET /users/42", new CachedResponse(200, Map.of(), new byte[0]), Duration.ofMinutes(1));
+                Thread.sleep(100);
+            }
+            assertEquals("serviceA GET /users/42", invalidated.get(1, TimeUnit.SECONDS));
+        } finally {
+            otherReplica.destroy();
+        }
+    }
+}
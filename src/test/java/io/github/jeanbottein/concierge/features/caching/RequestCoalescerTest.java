@@ -0,0 +1,162 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the sharing of one in-flight backend call between identical requests.
+ */
+class RequestCoalescerTest {
+
+    private static final byte[] BODY = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+    @Test
+    @DisplayName("Should give the follower the leader's response")
+    void shouldShareLeaderResponse() throws Exception {
+        // Given a leader in flight and a follower waiting on it
+        var coalescer = coalescer(Duration.ofSeconds(5));
+        var leader = request();
+        coalescer.join("serviceA", leader);
+        var follower = request();
+        var joined = CompletableFuture.runAsync(() -> join(coalescer, follower));
+
+        // When the leader gets its response
+        answer(leader, 200);
+        coalescer.complete(leader);
+        joined.get(5, TimeUnit.SECONDS);
+
+        // Then only the leader called the backend and the follower got the same response
+        assertTrue(follower.getProperty(RequestCoalescer.COALESCED, false, Boolean.class));
+        assertEquals(200, follower.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertArrayEquals(BODY, follower.getMessage().getBody(byte[].class));
+        assertFalse(leader.getProperty(RequestCoalescer.COALESCED, false, Boolean.class));
+    }
+
+    @Test
+    @DisplayName("Should let the follower call the backend when the leader takes too long")
+    void shouldFallBackAfterMaxWait() throws Exception {
+        var coalescer = coalescer(Duration.ofMillis(50));
+        coalescer.join("serviceA", request());
+        var follower = request();
+
+        coalescer.join("serviceA", follower);
+
+        assertFalse(follower.getProperty(RequestCoalescer.COALESCED, false, Boolean.class));
+        assertNull(follower.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    }
+
+    @Test
+    @DisplayName("Should not share 304, 429 or 5xx responses")
+    void shouldNotShareUncacheableResponses() throws Exception {
+        for (var status : new int[] {304, 429, 503}) {
+            // Given a follower waiting on a leader
+            var coalescer = coalescer(Duration.ofSeconds(5));
+            var leader = request();
+            coalescer.join("serviceA", leader);
+            var follower = request();
+            var joined = CompletableFuture.runAsync(() -> join(coalescer, follower));
+
+            // When the leader gets a response that is not for everyone
+            answer(leader, status);
+            coalescer.complete(leader);
+            joined.get(1, TimeUnit.SECONDS);
+
+            // Then the follower goes to the backend itself, without waiting for the max wait
+            assertFalse(follower.getProperty(RequestCoalescer.COALESCED, false, Boolean.class));
+            assertNull(follower.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+        }
+    }
+
+    @Test
+    @DisplayName("Should neither lead nor follow with conditional requests")
+    void shouldSkipConditionalRequests() throws Exception {
+        var coalescer = coalescer(Duration.ofMillis(200));
+        var conditional = request();
+        conditional.getIn().setHeader("If-None-Match", "\"v1\"");
+        coalescer.join("serviceA", conditional);
+
+        // A plain request does not wait on the conditional one
+        var plain = request();
+        coalescer.join("serviceA", plain);
+        answer(plain, 200);
+        coalescer.complete(plain);
+
+        // And a conditional one does not take the plain request's response
+        var revalidation = request();
+        revalidation.getIn().setHeader("If-Modified-Since", "Wed, 21 Oct 2015 07:28:00 GMT");
+        coalescer.join("serviceA", revalidation);
+
+        assertFalse(plain.getProperty(RequestCoalescer.COALESCED, false, Boolean.class));
+        assertFalse(revalidation.getProperty(RequestCoalescer.COALESCED, false, Boolean.class));
+        assertNull(revalidation.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    }
+
+    @Test
+    @DisplayName("Should release followers when the leader fails")
+    void shouldReleaseFollowersOnLeaderException() throws Exception {
+        // Given a follower waiting on a leader
+        var coalescer = coalescer(Duration.ofSeconds(5));
+        var leader = request();
+        coalescer.join("serviceA", leader);
+        var follower = request();
+        var joined = CompletableFuture.runAsync(() -> join(coalescer, follower));
+
+        // When the leader ends with an exception
+        leader.setException(new IllegalStateException("Backend unreachable"));
+        leader.getExchangeExtension().handoverCompletions().forEach(completion -> completion.onFailure(leader));
+        joined.get(1, TimeUnit.SECONDS);
+
+        // Then the follower goes to the backend itself, without waiting for the max wait
+        assertFalse(follower.getProperty(RequestCoalescer.COALESCED, false, Boolean.class));
+        assertNull(follower.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    }
+
+    private static RequestCoalescer coalescer(Duration maxWait) {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getCaching().setCoalesce(true);
+        proxyConfig.getCaching().setCoalesceMaxWait(maxWait);
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return new RequestCoalescer(appConfig, new SimpleMeterRegistry());
+    }
+
+    private Exchange request() {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "GET");
+        exchange.setProperty("remainingPath", "/todos/1");
+        return exchange;
+    }
+
+    private static void answer(Exchange exchange, int status) {
+        exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, status);
+        exchange.getMessage().setBody(status == 200 ? BODY : new byte[0]);
+    }
+
+    private static void join(RequestCoalescer coalescer, Exchange exchange) {
+        try {
+            coalescer.join("serviceA", exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
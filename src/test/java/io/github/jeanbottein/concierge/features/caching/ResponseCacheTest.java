@@ -0,0 +1,238 @@
+package io.github.jeanbottein.concierge.features.caching;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the cache key derivation used by the proxy cache regions, and for what the
+ * regions agree to store and serve.
+ */
+class ResponseCacheTest {
+
+    private static final byte[] BODY = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+    @Test
+    @DisplayName("Should build key from method and path when no key fields are configured")
+    void shouldIgnoreQueryWithoutKeyFields() {
+        assertEquals("GET /todos/1", ResponseCache.keyFor("GET", "/todos/1", "foo=bar", List.of()));
+    }
+
+    @Test
+    @DisplayName("Should only use configured key fields, in configuration order")
+    void shouldUseKeyFieldsInConfigurationOrder() {
+        var key = ResponseCache.keyFor("GET", "/posts", "id=2&sort=desc&userId=1", List.of("userId", "id"));
+
+        assertEquals("GET /posts?userId=1&id=2", key);
+    }
+
+    @Test
+    @DisplayName("Should not confuse key fields sharing a prefix")
+    void shouldMatchWholeParameterNames() {
+        var key = ResponseCache.keyFor("GET", "/posts", "idx=9&id=3", List.of("id"));
+
+        assertEquals("GET /posts?id=3", key);
+    }
+
+    @Test
+    @DisplayName("Should accept gzip unless the client refuses it")
+    void shouldDetectGzipAcceptance() {
+        assertTrue(ResponseCache.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ResponseCache.acceptsGzip("br;q=1.0, *;q=0.5"));
+        assertFalse(ResponseCache.acceptsGzip("gzip;q=0, identity"));
+        assertFalse(ResponseCache.acceptsGzip("identity"));
+        assertFalse(ResponseCache.acceptsGzip(null));
+    }
+
+    @Test
+    @DisplayName("Should neither look up nor store requests carrying credentials")
+    void shouldBypassCredentialedRequests() {
+        // Given a caching proxy that does not key on credentials
+        var cache = responseCache(new ProxyConfig());
+        var alice = request();
+        alice.getIn().setHeader("Authorization", "Bearer alice");
+
+        // When Alice's response comes back
+        cache.lookup("serviceA", alice);
+        answer(alice, 200, null);
+        cache.store("serviceA", alice);
+
+        // Then it was not stored for anyone
+        assertFalse(alice.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        assertNull(alice.getProperty(ResponseCache.CACHE_KEY));
+        var bob = request();
+        bob.getIn().setHeader("Cookie", "session=bob");
+        cache.lookup("serviceA", bob);
+        assertFalse(bob.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        var anonymous = request();
+        cache.lookup("serviceA", anonymous);
+        assertFalse(anonymous.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+    }
+
+    @Test
+    @DisplayName("Should keep one entry per credential when the proxy keys on it")
+    void shouldKeyOnCredentialsWhenConfigured() {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getCaching().setKeyHeaders(List.of("authorization"));
+        var cache = responseCache(proxyConfig);
+        var alice = request();
+        alice.getIn().setHeader("Authorization", "Bearer alice");
+        cache.lookup("serviceA", alice);
+        answer(alice, 200, null);
+        cache.store("serviceA", alice);
+
+        var aliceAgain = request();
+        aliceAgain.getIn().setHeader("Authorization", "Bearer alice");
+        cache.lookup("serviceA", aliceAgain);
+        var bob = request();
+        bob.getIn().setHeader("Authorization", "Bearer bob");
+        cache.lookup("serviceA", bob);
+
+        assertTrue(aliceAgain.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        assertArrayEquals(BODY, aliceAgain.getMessage().getBody(byte[].class));
+        assertFalse(bob.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        assertFalse(alice.getProperty(ResponseCache.CACHE_KEY, String.class).contains("alice"));
+    }
+
+    @Test
+    @DisplayName("Should never store responses marked private or no-store")
+    void shouldNotStorePrivateResponses() {
+        for (var cacheControl : List.of("private, max-age=60", "no-store", "max-age=0, private=\"Set-Cookie\"")) {
+            var cache = responseCache(new ProxyConfig());
+            var first = request();
+            cache.lookup("serviceA", first);
+            answer(first, 200, cacheControl);
+            cache.store("serviceA", first);
+
+            var second = request();
+            cache.lookup("serviceA", second);
+
+            assertFalse(second.getProperty(ResponseCache.CACHE_HIT, Boolean.class), cacheControl);
+        }
+    }
+
+    @Test
+    @DisplayName("Should revalidate an expired entry and serve it again on 304")
+    void shouldRevalidateExpiredEntry() {
+        // Given an entry with an ETag past its ttl
+        var cache = responseCache(new ProxyConfig());
+        cache.restore("serviceA", "GET /todos/1", expired(Duration.ofSeconds(15)));
+        var exchange = request();
+
+        // When the request goes to the backend, which answers 304
+        cache.lookup("serviceA", exchange);
+        assertFalse(exchange.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        assertEquals("\"v1\"", exchange.getIn().getHeader("If-None-Match"));
+        exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 304);
+        exchange.getMessage().setHeader("ETag", "\"v1\"");
+        exchange.getMessage().setBody(null);
+        cache.store("serviceA", exchange);
+
+        // Then the cached body is served, and the entry is fresh again
+        assertEquals(200, exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals("REVALIDATED", exchange.getMessage().getHeader(ResponseCache.CACHE_STATUS_HEADER));
+        assertArrayEquals(BODY, exchange.getMessage().getBody(byte[].class));
+        var next = request();
+        cache.lookup("serviceA", next);
+        assertEquals("HIT", next.getMessage().getHeader(ResponseCache.CACHE_STATUS_HEADER));
+    }
+
+    @Test
+    @DisplayName("Should serve an expired entry within staleWhileRevalidate and ask for a refresh")
+    void shouldServeStaleWhileRevalidating() {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getCaching().setStaleWhileRevalidate(Duration.ofSeconds(30));
+        var cache = responseCache(proxyConfig);
+        cache.restore("serviceA", "GET /todos/1", expired(Duration.ofSeconds(15)));
+        var exchange = request();
+
+        cache.lookup("serviceA", exchange);
+
+        assertTrue(exchange.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        assertTrue(exchange.getProperty(ResponseCache.REVALIDATE, Boolean.class));
+        assertEquals("STALE", exchange.getMessage().getHeader(ResponseCache.CACHE_STATUS_HEADER));
+        assertArrayEquals(BODY, exchange.getMessage().getBody(byte[].class));
+        // The refresh is made with the request headers, not the served response's
+        assertEquals("GET", exchange.getProperty(ResponseCache.REQUEST_HEADERS, Map.class).get(Exchange.HTTP_METHOD));
+    }
+
+    @Test
+    @DisplayName("Should stand in for a failing backend within staleIfError only")
+    void shouldServeStaleOnError() {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getCaching().setStaleIfError(Duration.ofMinutes(5));
+        var cache = responseCache(proxyConfig);
+        cache.restore("serviceA", "GET /todos/1", expired(Duration.ofSeconds(15)));
+        var exchange = request();
+        cache.lookup("serviceA", exchange);
+        assertFalse(exchange.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+
+        answer(exchange, 503, null);
+        cache.store("serviceA", exchange);
+
+        assertEquals(200, exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+        assertEquals("STALE", exchange.getMessage().getHeader(ResponseCache.CACHE_STATUS_HEADER));
+        assertArrayEquals(BODY, exchange.getMessage().getBody(byte[].class));
+
+        // Past the window the error goes through
+        var tooOld = responseCache(proxyConfig);
+        tooOld.restore("serviceA", "GET /todos/1", expired(Duration.ofMinutes(6)));
+        var late = request();
+        tooOld.lookup("serviceA", late);
+        answer(late, 503, null);
+        tooOld.store("serviceA", late);
+        assertEquals(503, late.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+    }
+
+    // A 200 with an ETag stored age ago, for a proxy with the default 10s ttl
+    private static CachedResponse expired(Duration age) {
+        return new CachedResponse(200, Map.of("Content-Type", "application/json", "ETag", "\"v1\""), BODY,
+            System.currentTimeMillis() - age.toMillis());
+    }
+
+    private static ResponseCache responseCache(ProxyConfig proxyConfig) {
+        proxyConfig.getCaching().setEnabled(true);
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        var connectionFactories = new StaticListableBeanFactory().getBeanProvider(RedisConnectionFactory.class);
+        return new ResponseCache(appConfig, new SimpleMeterRegistry(), new RedisResponseStore(appConfig, connectionFactories));
+    }
+
+    private Exchange request() {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "GET");
+        exchange.setProperty("remainingPath", "/todos/1");
+        return exchange;
+    }
+
+    private static void answer(Exchange exchange, int status, String cacheControl) {
+        var message = exchange.getMessage();
+        message.setHeader(Exchange.HTTP_RESPONSE_CODE, status);
+        message.setHeader(Exchange.CONTENT_TYPE, "application/json");
+        if (cacheControl != null) {
+            message.setHeader("Cache-Control", cacheControl);
+        }
+        message.setBody(BODY);
+    }
+}
@@ -0,0 +1,255 @@
+package io.github.jeanbottein.concierge.features.compression;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.caching.RedisResponseStore;
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for Content-Encoding negotiation between clients and backends.
+ */
+class ResponseCompressionTest {
+
+    private static final byte[] BODY = "{\"id\":1,\"title\":\"delectus aut autem\"}".repeat(50)
+        .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    @DisplayName("Should honour q=0 and the wildcard coding")
+    void shouldParseAcceptEncoding() {
+        assertTrue(ResponseCompression.accepts("gzip, deflate, br", "br"));
+        assertTrue(ResponseCompression.accepts("br;q=1.0, *;q=0.5", "deflate"));
+        assertFalse(ResponseCompression.accepts("*, gzip;q=0", "gzip"));
+        assertFalse(ResponseCompression.accepts("gzip, *;q=0", "deflate"));
+        assertFalse(ResponseCompression.accepts(null, "gzip"));
+        assertFalse(ResponseCompression.accepts("gzip; q = 0.000", "gzip"));
+        assertFalse(ResponseCompression.accepts("gzip;Q=0.", "gzip"));
+        assertTrue(ResponseCompression.accepts("gzip;q=0.001", "gzip"));
+        assertTrue(ResponseCompression.accepts("gzip;q=0.0000", "gzip"));
+        assertTrue(ResponseCompression.accepts("gzip;level=0", "gzip"));
+    }
+
+    @Test
+    @DisplayName("Should ask the backend for gzip even when the client only takes identity")
+    void shouldRequestDecodableEncoding() {
+        var compression = compression();
+        var exchange = exchange("br;q=0, identity");
+
+        compression.prepareBackendRequest("serviceA", exchange);
+
+        assertEquals("gzip", exchange.getIn().getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    @DisplayName("Should not ask for brotli when responses are cached or coalesced")
+    void shouldOnlyRequestDecodableEncodingsWhenSharing() {
+        var appConfig = appConfig();
+        appConfig.getProxies().get("serviceA").getCaching().setEnabled(true);
+        var exchange = exchange("br, gzip");
+
+        new ResponseCompression(appConfig).prepareBackendRequest("serviceA", exchange);
+
+        assertEquals("gzip, deflate", exchange.getIn().getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    @DisplayName("Should never replay a brotli response to clients that may not accept it")
+    void shouldNotCacheUndecodableResponses() {
+        // Given a caching proxy whose backend answers with brotli although it was not asked to
+        var appConfig = appConfig();
+        appConfig.getProxies().get("serviceA").getCaching().setEnabled(true);
+        var compression = new ResponseCompression(appConfig);
+        var connectionFactories = new StaticListableBeanFactory().getBeanProvider(RedisConnectionFactory.class);
+        var cache = new ResponseCache(appConfig, new SimpleMeterRegistry(), new RedisResponseStore(appConfig, connectionFactories));
+        var first = cacheable("br");
+        cache.lookup("serviceA", first);
+        first.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+        first.getMessage().setHeader(Exchange.CONTENT_TYPE, "application/json");
+        first.getMessage().setHeader("Content-Encoding", "br");
+        first.getMessage().setBody(new byte[] {1, 2, 3});
+
+        // When it is stored
+        cache.store("serviceA", first);
+        compression.negotiate("serviceA", first);
+
+        // Then gzip-only and identity-only clients go to the backend instead of getting it
+        var gzipOnly = cacheable("gzip");
+        cache.lookup("serviceA", gzipOnly);
+        assertFalse(gzipOnly.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        var identityOnly = cacheable("identity");
+        cache.lookup("serviceA", identityOnly);
+        assertFalse(identityOnly.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+    }
+
+    @Test
+    @DisplayName("Should replay a cached gzip response to gzip-only and identity-only clients")
+    void shouldReplayCachedResponseInAcceptedEncoding() {
+        // Given a gzip response cached for a client accepting brotli and gzip
+        var appConfig = appConfig();
+        appConfig.getProxies().get("serviceA").getCaching().setEnabled(true);
+        var compression = new ResponseCompression(appConfig);
+        var connectionFactories = new StaticListableBeanFactory().getBeanProvider(RedisConnectionFactory.class);
+        var cache = new ResponseCache(appConfig, new SimpleMeterRegistry(), new RedisResponseStore(appConfig, connectionFactories));
+        var first = cacheable("br, gzip");
+        cache.lookup("serviceA", first);
+        first.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+        first.getMessage().setHeader(Exchange.CONTENT_TYPE, "application/json");
+        first.getMessage().setHeader("Content-Encoding", "gzip");
+        first.getMessage().setBody(ResponseCompression.encode(BODY, "gzip", 6));
+        cache.store("serviceA", first);
+
+        // When a gzip-only and an identity-only client ask for it
+        var gzipOnly = cacheable("gzip");
+        cache.lookup("serviceA", gzipOnly);
+        compression.negotiate("serviceA", gzipOnly);
+        var identityOnly = cacheable("identity");
+        cache.lookup("serviceA", identityOnly);
+        compression.negotiate("serviceA", identityOnly);
+
+        // Then each gets a body it can read
+        assertTrue(gzipOnly.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        assertEquals("gzip", gzipOnly.getMessage().getHeader("Content-Encoding"));
+        assertArrayEquals(BODY, ResponseCompression.decode(gzipOnly.getMessage().getBody(byte[].class), "gzip"));
+        assertTrue(identityOnly.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        assertNull(identityOnly.getMessage().getHeader("Content-Encoding"));
+        assertArrayEquals(BODY, identityOnly.getMessage().getBody(byte[].class));
+    }
+
+    @Test
+    @DisplayName("Should compress a cached response once and replay the same bytes to gzip clients")
+    void shouldCompressSharedResponseOnce() {
+        // Given an identity response of a caching proxy, for a client that only takes identity
+        var appConfig = appConfig();
+        appConfig.getProxies().get("serviceA").getCaching().setEnabled(true);
+        var compression = new ResponseCompression(appConfig);
+        var connectionFactories = new StaticListableBeanFactory().getBeanProvider(RedisConnectionFactory.class);
+        var cache = new ResponseCache(appConfig, new SimpleMeterRegistry(), new RedisResponseStore(appConfig, connectionFactories));
+        var first = cacheable("identity");
+        cache.lookup("serviceA", first);
+        first.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+        first.getMessage().setHeader(Exchange.CONTENT_TYPE, "application/json");
+        first.getMessage().setBody(BODY);
+
+        // When it is stored, then replayed to two gzip clients
+        compression.encodeShared("serviceA", first);
+        cache.store("serviceA", first);
+        compression.negotiate("serviceA", first);
+        var hits = new byte[2][];
+        for (int i = 0; i < hits.length; i++) {
+            var hit = cacheable("gzip");
+            cache.lookup("serviceA", hit);
+            compression.negotiate("serviceA", hit);
+            assertEquals("gzip", hit.getMessage().getHeader("Content-Encoding"));
+            hits[i] = hit.getMessage().getBody(byte[].class);
+        }
+
+        // Then its own client got it decoded, and the hits the stored bytes without a new compression
+        assertNull(first.getMessage().getHeader("Content-Encoding"));
+        assertArrayEquals(BODY, first.getMessage().getBody(byte[].class));
+        assertSame(hits[0], hits[1]);
+        assertArrayEquals(BODY, ResponseCompression.decode(hits[0], "gzip"));
+    }
+
+    @Test
+    @DisplayName("Should not compress responses of proxies that neither cache nor coalesce")
+    void shouldOnlyEncodeSharedResponses() {
+        var compression = compression();
+        var exchange = exchange("identity");
+        exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+        exchange.getMessage().setHeader(Exchange.CONTENT_TYPE, "application/json");
+        exchange.getMessage().setBody(BODY);
+
+        compression.encodeShared("serviceA", exchange);
+
+        assertNull(exchange.getMessage().getHeader("Content-Encoding"));
+        assertSame(BODY, exchange.getMessage().getBody(byte[].class));
+    }
+
+    @Test
+    @DisplayName("Should compress large JSON responses for clients accepting gzip")
+    void shouldCompressResponse() {
+        var compression = compression();
+        var exchange = exchange("gzip");
+        exchange.getMessage().setHeader(Exchange.CONTENT_TYPE, "application/json");
+        exchange.getMessage().setBody(BODY);
+
+        compression.negotiate("serviceA", exchange);
+
+        var message = exchange.getMessage();
+        assertEquals("gzip", message.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", message.getHeader("Vary"));
+        assertArrayEquals(BODY, ResponseCompression.decode(message.getBody(byte[].class), "gzip"));
+    }
+
+    @Test
+    @DisplayName("Should decode backend gzip for clients that do not accept it")
+    void shouldDecodeForIdentityClients() {
+        var compression = compression();
+        var exchange = exchange("identity");
+        exchange.getMessage().setHeader(Exchange.CONTENT_TYPE, "application/json");
+        exchange.getMessage().setHeader("Content-Encoding", "gzip");
+        exchange.getMessage().setBody(ResponseCompression.encode(BODY, "gzip", 6));
+
+        compression.negotiate("serviceA", exchange);
+
+        assertNull(exchange.getMessage().getHeader("Content-Encoding"));
+        assertArrayEquals(BODY, exchange.getMessage().getBody(byte[].class));
+    }
+
+    @Test
+    @DisplayName("Should leave bodies below the size threshold unencoded")
+    void shouldSkipSmallResponses() {
+        var compression = compression();
+        var exchange = exchange("gzip");
+        exchange.getMessage().setHeader(Exchange.CONTENT_TYPE, "application/json");
+        exchange.getMessage().setBody("{}".getBytes(StandardCharsets.UTF_8));
+
+        compression.negotiate("serviceA", exchange);
+
+        assertNull(exchange.getMessage().getHeader("Content-Encoding"));
+    }
+
+    private static ResponseCompression compression() {
+        return new ResponseCompression(appConfig());
+    }
+
+    private static AppConfig appConfig() {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getCompression().setEnabled(true);
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return appConfig;
+    }
+
+    // A GET for the same cacheable path, as the proxy route sees it before the cache lookup
+    private static Exchange cacheable(String acceptEncoding) {
+        var exchange = exchange(acceptEncoding);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "GET");
+        exchange.setProperty("remainingPath", "/todos/1");
+        return exchange;
+    }
+
+    private static Exchange exchange(String acceptEncoding) {
+        var exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader("Accept-Encoding", acceptEncoding);
+        exchange.setProperty(ResponseCompression.ACCEPT_ENCODING, acceptEncoding);
+        return exchange;
+    }
+}
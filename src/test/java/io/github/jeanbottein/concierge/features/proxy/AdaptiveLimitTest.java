@@ -0,0 +1,134 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.features.proxy.AdaptiveLimit.Priority;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the latency-driven concurrency limit and its priority shedding.
+ */
+class AdaptiveLimitTest {
+
+    @Test
+    @DisplayName("Should grow while latency holds and shrink when it climbs")
+    void shouldFollowLatency() throws InterruptedException {
+        // Given: A backend answering in 10ms
+        var limit = new AdaptiveLimit(50, 5, 200);
+        for (int i = 0; i < 30; i++) {
+            call(limit, 10);
+        }
+        assertTrue(limit.limit() > 50, "limit grew to " + limit.limit());
+
+        // When: Its response time jumps to 100ms
+        for (int i = 0; i < 30; i++) {
+            call(limit, 100);
+        }
+
+        // Then: The limit drops well under where it started
+        assertTrue(limit.limit() < 25, "limit dropped to " + limit.limit());
+    }
+
+    @Test
+    @DisplayName("Should ignore response times of calls made far under the limit")
+    void shouldIgnoreSamplesFarUnderLimit() throws InterruptedException {
+        var limit = new AdaptiveLimit(50, 5, 200);
+        for (int i = 0; i < 30; i++) {
+            var taken = limit.tryAcquire(Priority.NORMAL, 0);
+            limit.release(TimeUnit.MILLISECONDS.toNanos(i < 10 ? 10 : 500), taken);
+        }
+
+        assertEquals(50, limit.limit());
+        assertEquals(0, limit.inFlight());
+    }
+
+    @Test
+    @DisplayName("Should shed low priority requests first")
+    void shouldShedByPriority() throws InterruptedException {
+        // Given: A fixed limit of 10
+        var limit = new AdaptiveLimit(10, 10, 10);
+
+        // Then: Low priority fills half of it, normal 90% and critical all of it
+        assertEquals(5, fill(limit, Priority.LOW));
+        assertEquals(4, fill(limit, Priority.NORMAL));
+        assertEquals(1, fill(limit, Priority.CRITICAL));
+    }
+
+    @Test
+    @DisplayName("Should hand a released permit to a waiting request")
+    void shouldWaitForReleasedPermit() throws InterruptedException {
+        var limit = new AdaptiveLimit(10, 10, 10);
+        fill(limit, Priority.CRITICAL);
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            limit.release(-1, 10);
+        });
+
+        assertTrue(limit.tryAcquire(Priority.CRITICAL, TimeUnit.SECONDS.toNanos(5)) > 0);
+        // Low priority never waits
+        assertEquals(-1, limit.tryAcquire(Priority.LOW, TimeUnit.SECONDS.toNanos(5)));
+    }
+
+    @Test
+    @DisplayName("Should wake every waiter on release, so the one that fits is not left asleep")
+    void shouldWakeWaiterThatFits() throws Exception {
+        // Given: A full limit, with a normal request waiting ahead of a critical one
+        var limit = new AdaptiveLimit(10, 10, 10);
+        fill(limit, Priority.CRITICAL);
+        var normal = CompletableFuture.supplyAsync(() -> acquire(limit, Priority.NORMAL, 5));
+        Thread.sleep(100);
+        var critical = CompletableFuture.supplyAsync(() -> acquire(limit, Priority.CRITICAL, 5));
+        Thread.sleep(100);
+
+        // When: One permit is released, which only the critical request may take
+        limit.release(-1, 10);
+
+        // Then: The critical request gets it well before its max wait
+        assertTrue(critical.get(1, TimeUnit.SECONDS) > 0);
+        limit.release(-1, 10);
+        limit.release(-1, 10);
+        assertTrue(normal.get(1, TimeUnit.SECONDS) > 0);
+    }
+
+    @Test
+    @DisplayName("Should read priority classes from header values")
+    void shouldParsePriority() {
+        assertEquals(Priority.CRITICAL, Priority.of(" Critical "));
+        assertEquals(Priority.LOW, Priority.of("sheddable"));
+        assertEquals(Priority.NORMAL, Priority.of("whatever"));
+        assertEquals(Priority.NORMAL, Priority.of(null));
+    }
+
+    // A call made at the limit, so its response time counts
+    private static void call(AdaptiveLimit limit, long rttMillis) throws InterruptedException {
+        limit.tryAcquire(Priority.CRITICAL, 0);
+        limit.release(TimeUnit.MILLISECONDS.toNanos(rttMillis), limit.limit());
+    }
+
+    private static int acquire(AdaptiveLimit limit, Priority priority, long maxWaitSeconds) {
+        try {
+            return limit.tryAcquire(priority, TimeUnit.SECONDS.toNanos(maxWaitSeconds));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static int fill(AdaptiveLimit limit, Priority priority) throws InterruptedException {
+        var taken = 0;
+        while (limit.tryAcquire(priority, 0) > 0) {
+            taken++;
+        }
+        return taken;
+    }
+}
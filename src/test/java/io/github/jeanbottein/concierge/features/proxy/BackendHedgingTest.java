@@ -0,0 +1,179 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for hedged backend calls, against a direct endpoint standing in for the backend.
+ */
+class BackendHedgingTest {
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+    // Backend latency by call number, the first call is slow unless a test says otherwise
+    private volatile Duration slowCall = Duration.ofSeconds(2);
+    private volatile int slowCalls = 1;
+    private BackendHedging hedging;
+
+    @BeforeEach
+    void start() throws Exception {
+        camelContext.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:backend").process(exchange -> {
+                    var call = calls.incrementAndGet();
+                    if (call <= slowCalls) {
+                        Thread.sleep(slowCall.toMillis());
+                    }
+                    exchange.getMessage().setBody("call " + call);
+                });
+            }
+        });
+        camelContext.start();
+    }
+
+    @AfterEach
+    void stop() {
+        hedging.destroy();
+        camelContext.stop();
+    }
+
+    @Test
+    @DisplayName("Should answer with the hedge when the first call is slow")
+    void shouldWinWithHedge() throws InterruptedException {
+        hedging = hedging(1.0);
+
+        var exchange = get();
+        hedging.call(exchange);
+
+        assertTrue(BackendHedging.answered(exchange));
+        assertEquals("call 2", exchange.getMessage().getBody(String.class));
+        assertEquals(1, registry.get("concierge.proxy.hedge.sent").counter().count());
+        assertEquals(1, registry.get("concierge.proxy.hedge.won").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should not hedge calls answering within the delay")
+    void shouldNotHedgeFastCalls() throws InterruptedException {
+        slowCalls = 0;
+        hedging = hedging(1.0);
+
+        var exchange = get();
+        hedging.call(exchange);
+
+        assertEquals("call 1", exchange.getMessage().getBody(String.class));
+        assertEquals(0, registry.get("concierge.proxy.hedge.sent").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should hedge no more than the budget allows")
+    void shouldRespectBudget() throws InterruptedException {
+        // Given: Every call is slower than the delay, and half the requests may be hedged
+        slowCall = Duration.ofMillis(100);
+        slowCalls = Integer.MAX_VALUE;
+        hedging = hedging(0.5);
+
+        for (int i = 0; i < 4; i++) {
+            hedging.call(get());
+        }
+
+        assertEquals(2, registry.get("concierge.proxy.hedge.sent").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should not hedge when the proxy has no concurrency permit to spare")
+    void shouldHoldBulkheadPermitPerHedge() throws InterruptedException {
+        // Given: A proxy limited to one backend call, held by the request being hedged
+        var concurrency = new ProxyConfig();
+        concurrency.getConcurrency().setMaxConcurrent(1);
+        var bulkheads = bulkheads(concurrency);
+        hedging = hedging(1.0, bulkheads);
+        var exchange = get();
+        bulkheads.acquire("serviceA", exchange);
+
+        hedging.call(exchange);
+
+        assertEquals("call 1", exchange.getMessage().getBody(String.class));
+        assertEquals(0, registry.get("concierge.proxy.hedge.sent").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should give the hedge's permit back once it is over")
+    void shouldReleaseHedgePermit() throws InterruptedException {
+        // Given: A proxy limited to two backend calls, one of them held by the request being hedged
+        var concurrency = new ProxyConfig();
+        concurrency.getConcurrency().setMaxConcurrent(2);
+        var bulkheads = bulkheads(concurrency);
+        hedging = hedging(1.0, bulkheads);
+        var exchange = get();
+        bulkheads.acquire("serviceA", exchange);
+
+        hedging.call(exchange);
+
+        // Then: The hedge was sent, and its permit is free again for the next extra call
+        assertEquals(1, registry.get("concierge.proxy.hedge.sent").counter().count());
+        var extra = bulkheads.tryAcquireExtra("serviceA", get());
+        assertNotNull(extra);
+        extra.accept(-1);
+    }
+
+    @Test
+    @DisplayName("Should leave other methods to the regular backend call")
+    void shouldIgnoreOtherMethods() throws InterruptedException {
+        hedging = hedging(1.0);
+        var exchange = get();
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "POST");
+
+        hedging.call(exchange);
+
+        assertFalse(BackendHedging.answered(exchange));
+        assertEquals(0, calls.get());
+    }
+
+    private Exchange get() {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.setProperty("proxyName", "serviceA");
+        exchange.setProperty("backendUri", "direct:backend");
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "GET");
+        return exchange;
+    }
+
+    private BackendHedging hedging(double budget) {
+        return hedging(budget, bulkheads(new ProxyConfig()));
+    }
+
+    private BackendHedging hedging(double budget, ProxyBulkheads bulkheads) {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getHedging().setEnabled(true);
+        proxyConfig.getHedging().setDelay(Duration.ofMillis(20));
+        proxyConfig.getHedging().setBudget(budget);
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return new BackendHedging(appConfig, registry, camelContext.createProducerTemplate(), bulkheads);
+    }
+
+    private ProxyBulkheads bulkheads(ProxyConfig proxyConfig) {
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return new ProxyBulkheads(appConfig, registry);
+    }
+}
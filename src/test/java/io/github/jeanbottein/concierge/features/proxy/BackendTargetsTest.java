@@ -0,0 +1,123 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.List;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.TargetConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for target selection and passive ejection of balanced proxies.
+ */
+class BackendTargetsTest {
+
+    private static final String HEALTHY = "http://healthy:8080";
+    private static final String FAILING = "http://failing:8080";
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BackendTargets backendTargets = new BackendTargets(appConfig(), registry);
+
+    @AfterEach
+    void shutdown() {
+        backendTargets.destroy();
+    }
+
+    @Test
+    @DisplayName("Should not balance proxies with a single target")
+    void shouldIgnoreSingleTargetProxies() {
+        assertNull(backendTargets.select("serviceB", new DefaultExchange(camelContext)));
+    }
+
+    @Test
+    @DisplayName("Should eject a failing target and send every request to the other one")
+    void shouldEjectFailingTarget() {
+        // Given: The failing target answers 500 to a whole ejection window
+        var failures = 0;
+        while (failures < 4) {
+            var exchange = call(500);
+            if (FAILING.equals(exchange.getProperty(BackendTargets.TARGET, BackendTargets.Target.class).url())) {
+                failures++;
+            }
+        }
+
+        // Then: It is ejected and no longer picked
+        for (int i = 0; i < 50; i++) {
+            assertEquals(HEALTHY, backendTargets.select("serviceA", new DefaultExchange(camelContext)).url());
+        }
+        assertEquals(1, registry.get("concierge.proxy.target.ejected").tag("target", FAILING).gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should read ejections correctly whatever the sign of the nanosecond clock")
+    void shouldCompareEjectionDeadlinesSafely() {
+        // Given: A target never ejected, and a failing one ejected until a health check passes
+        var healthChecked = appConfig();
+        healthChecked.getProxies().get("serviceA").getLoadBalancing().setHealthCheckPath("/health");
+        var checkedTargets = new BackendTargets(healthChecked, new SimpleMeterRegistry());
+        try {
+            BackendTargets.Target healthy = null;
+            BackendTargets.Target failing = null;
+            while (failing == null || !failing.ejected(System.nanoTime()) || healthy == null) {
+                var target = call(checkedTargets, 500).getProperty(BackendTargets.TARGET, BackendTargets.Target.class);
+                if (HEALTHY.equals(target.url())) {
+                    healthy = target;
+                } else {
+                    failing = target;
+                }
+            }
+
+            // Then: Both read the same at any clock value, including the extremes
+            for (var now : new long[] {Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE}) {
+                assertFalse(healthy.ejected(now));
+                assertTrue(failing.ejected(now));
+            }
+        } finally {
+            checkedTargets.destroy();
+        }
+    }
+
+    private Exchange call(int failingStatus) {
+        return call(backendTargets, failingStatus);
+    }
+
+    // Healthy targets always answer 200, whatever status is asked for
+    private Exchange call(BackendTargets backendTargets, int failingStatus) {
+        var exchange = new DefaultExchange(camelContext);
+        var target = backendTargets.select("serviceA", exchange);
+        exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, FAILING.equals(target.url()) ? failingStatus : 200);
+        backendTargets.recordResponse("serviceA", exchange);
+        return exchange;
+    }
+
+    private static AppConfig appConfig() {
+        var balanced = new ProxyConfig();
+        balanced.setTargets(List.of(target(HEALTHY), target(FAILING)));
+        balanced.getLoadBalancing().setEjectionWindow(4);
+        var single = new ProxyConfig();
+        single.setTarget(HEALTHY);
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", balanced);
+        appConfig.getProxies().put("serviceB", single);
+        return appConfig;
+    }
+
+    private static TargetConfig target(String url) {
+        var target = new TargetConfig();
+        target.setUrl(url);
+        return target;
+    }
+}
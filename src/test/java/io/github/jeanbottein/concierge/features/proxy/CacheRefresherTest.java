@@ -0,0 +1,154 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.caching.RedisResponseStore;
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+import io.github.jeanbottein.concierge.features.compression.ResponseCompression;
+import io.github.jeanbottein.concierge.features.resilience.BackendResilience;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the background refresh of stale cache entries, against a direct endpoint
+ * standing in for the backend.
+ */
+class CacheRefresherTest {
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws Exception {
+        camelContext.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:backend").process(exchange -> {
+                    calls.incrementAndGet();
+                    exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+                    exchange.getMessage().setBody("{\"id\":1}");
+                });
+            }
+        });
+        camelContext.start();
+    }
+
+    @AfterEach
+    void stop() {
+        camelContext.stop();
+    }
+
+    @Test
+    @DisplayName("Should refresh the entry from the backend and store the answer")
+    void shouldRefreshStaleEntry() throws Exception {
+        var proxyConfig = new ProxyConfig();
+        var appConfig = appConfig(proxyConfig);
+        var responseCache = responseCache(appConfig);
+
+        refresher(appConfig, responseCache).refreshIfStale("serviceA", "direct:backend", served());
+
+        // The refresh is asynchronous, give it a moment to store its answer
+        var lookup = request();
+        for (int i = 0; i < 50 && !lookup.getProperty(ResponseCache.CACHE_HIT, false, Boolean.class); i++) {
+            Thread.sleep(100);
+            lookup = request();
+            responseCache.lookup("serviceA", lookup);
+        }
+        assertEquals(1, calls.get());
+        assertEquals("HIT", lookup.getMessage().getHeader(ResponseCache.CACHE_STATUS_HEADER));
+    }
+
+    @Test
+    @DisplayName("Should not refresh while the backend's circuit is open")
+    void shouldSkipRefreshWhenCircuitOpen() throws Exception {
+        // Given: A circuit opened by two failed calls
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getResilience().setEnabled(true);
+        proxyConfig.getResilience().setSlidingWindowSize(2);
+        proxyConfig.getResilience().setMinimumNumberOfCalls(2);
+        var appConfig = appConfig(proxyConfig);
+        var resilience = new BackendResilience(appConfig, registry);
+        for (int i = 0; i < 2; i++) {
+            var failed = request();
+            resilience.tryAcquirePermission("serviceA", failed);
+            failed.setProperty(Exchange.EXCEPTION_CAUGHT, new IOException("Connection refused"));
+            resilience.recordFailure("serviceA", failed);
+        }
+        var refresher = new CacheRefresher(responseCache(appConfig), camelContext.createProducerTemplate(), resilience,
+            new ProxyBulkheads(appConfig, registry), new ResponseCompression(appConfig), new ProxyMetrics(appConfig, registry));
+
+        refresher.refreshIfStale("serviceA", "direct:backend", served());
+
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    @DisplayName("Should not refresh when the proxy has no concurrency permit to spare")
+    void shouldSkipRefreshWithoutPermit() throws Exception {
+        // Given: A proxy limited to one backend call, held by another request
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getConcurrency().setMaxConcurrent(1);
+        var appConfig = appConfig(proxyConfig);
+        var bulkheads = new ProxyBulkheads(appConfig, registry);
+        bulkheads.acquire("serviceA", request());
+        var refresher = new CacheRefresher(responseCache(appConfig), camelContext.createProducerTemplate(),
+            new BackendResilience(appConfig, registry), bulkheads, new ResponseCompression(appConfig),
+            new ProxyMetrics(appConfig, registry));
+
+        refresher.refreshIfStale("serviceA", "direct:backend", served());
+
+        assertEquals(0, calls.get());
+    }
+
+    private CacheRefresher refresher(AppConfig appConfig, ResponseCache responseCache) {
+        return new CacheRefresher(responseCache, camelContext.createProducerTemplate(), new BackendResilience(appConfig, registry),
+            new ProxyBulkheads(appConfig, registry), new ResponseCompression(appConfig), new ProxyMetrics(appConfig, registry));
+    }
+
+    // A request that was answered with a stale entry, as left by the cache lookup
+    private Exchange served() {
+        var served = request();
+        served.setProperty(ResponseCache.REVALIDATE, true);
+        served.setProperty(ResponseCache.CACHE_KEY, "GET /todos/1");
+        served.setProperty(ResponseCache.REQUEST_HEADERS, Map.of(Exchange.HTTP_METHOD, "GET"));
+        return served;
+    }
+
+    private Exchange request() {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.setProperty("proxyName", "serviceA");
+        exchange.setProperty("httpMethod", "GET");
+        exchange.setProperty("remainingPath", "/todos/1");
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "GET");
+        return exchange;
+    }
+
+    private ResponseCache responseCache(AppConfig appConfig) {
+        var connectionFactories = new StaticListableBeanFactory().getBeanProvider(RedisConnectionFactory.class);
+        return new ResponseCache(appConfig, registry, new RedisResponseStore(appConfig, connectionFactories));
+    }
+
+    private static AppConfig appConfig(ProxyConfig proxyConfig) {
+        proxyConfig.getCaching().setEnabled(true);
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return appConfig;
+    }
+}
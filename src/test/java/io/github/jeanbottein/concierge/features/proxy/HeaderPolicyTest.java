@@ -0,0 +1,91 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.List;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig.HeadersConfig;
+import io.github.jeanbottein.concierge.features.proxy.HeaderPolicy.HeaderNames;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the per-proxy rewriting of request headers.
+ */
+class HeaderPolicyTest {
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+    @Test
+    @DisplayName("Should drop Camel, hop-by-hop and Connection-listed headers in any case")
+    void shouldDropHopByHopHeaders() {
+        var message = request();
+        message.setHeader("connection", "keep-alive, X-Trace");
+        message.setHeader("x-trace", "1");
+        message.setHeader("HOST", "localhost:8081");
+        message.setHeader(Exchange.HTTP_URI, "/proxy/serviceA/todos/1");
+
+        HeaderPolicy.of(new HeadersConfig(), true).apply(message);
+
+        assertNull(message.getHeader("Connection"));
+        assertNull(message.getHeader("X-Trace"));
+        assertNull(message.getHeader("Host"));
+        assertNull(message.getHeader(Exchange.HTTP_URI));
+        assertEquals("GET", message.getHeader(Exchange.HTTP_METHOD));
+        assertEquals("abc", message.getHeader("X-Request-Id"));
+        assertEquals("Concierge-Proxy", message.getHeader("X-Forwarded-By"));
+        assertEquals("application/json", message.getHeader(Exchange.CONTENT_TYPE));
+    }
+
+    @Test
+    @DisplayName("Should apply allow and deny lists, and inject configured headers")
+    void shouldApplyConfiguredLists() {
+        var config = new HeadersConfig();
+        config.setAllow(List.of("x-request-id", "Authorization", "Cookie", "Content-Type"));
+        config.setDeny(List.of("COOKIE"));
+        config.getInject().put("X-Tenant", "acme");
+        config.getInject().put("X-Forwarded-By", "");
+        var message = request();
+        message.setHeader("Authorization", "Bearer token");
+        message.setHeader("Cookie", "session=1");
+        message.setHeader("User-Agent", "curl/8.5.0");
+
+        HeaderPolicy.of(config, false).apply(message);
+
+        assertEquals("abc", message.getHeader("X-Request-Id"));
+        assertEquals("Bearer token", message.getHeader("Authorization"));
+        assertNull(message.getHeader("Cookie"));
+        assertNull(message.getHeader("User-Agent"));
+        assertNull(message.getHeader("X-Forwarded-By"));
+        assertEquals("acme", message.getHeader("X-Tenant"));
+        // SOAP proxies keep their content type
+        assertEquals("text/xml", message.getHeader(Exchange.CONTENT_TYPE));
+    }
+
+    @Test
+    @DisplayName("Should match header names without regard to case")
+    void shouldMatchNamesIgnoringCase() {
+        var names = new HeaderNames(List.of("Content-Length", "TE", "content-length"));
+
+        assertTrue(names.contains("CONTENT-LENGTH"));
+        assertTrue(names.contains("te"));
+        assertFalse(names.contains("Content-Type"));
+        assertFalse(new HeaderNames(List.of()).contains("Host"));
+        assertTrue(new HeaderNames(List.of()).isEmpty());
+    }
+
+    private DefaultMessage request() {
+        var message = new DefaultMessage(camelContext);
+        message.setHeader(Exchange.HTTP_METHOD, "GET");
+        message.setHeader(Exchange.CONTENT_TYPE, "text/xml");
+        message.setHeader("X-Request-Id", "abc");
+        return message;
+    }
+}
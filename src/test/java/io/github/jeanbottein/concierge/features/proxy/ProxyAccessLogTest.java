@@ -0,0 +1,127 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the asynchronous access log, with an appender that holds the writer thread
+ * until the test lets it go.
+ */
+class ProxyAccessLogTest {
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+    private final Logger accessLogger = (Logger) LoggerFactory.getLogger("concierge.access");
+    private final HeldAppender appender = new HeldAppender();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void attachAppender() {
+        accessLogger.setLevel(Level.INFO);
+        appender.start();
+        accessLogger.addAppender(appender);
+    }
+
+    @AfterEach
+    void detachAppender() {
+        appender.release.countDown();
+        accessLogger.detachAppender(appender);
+        accessLogger.setLevel(null);
+    }
+
+    @Test
+    @DisplayName("Should drop entries instead of blocking when the buffer is full")
+    void shouldDropEntriesWhenBufferFull() throws Exception {
+        // Given: A buffer of two entries and a writer stuck on the first one
+        var accessLog = accessLog(1.0, 2);
+        accessLog.record("serviceA", request());
+        for (int i = 0; i < 50 && appender.received.get() == 0; i++) {
+            Thread.sleep(100);
+        }
+
+        // When: Many more entries come in than the buffer holds
+        var started = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            accessLog.record("serviceA", request());
+        }
+
+        // Then: The request thread never waited and the overflow was counted
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(98, accessLog.droppedEntries());
+        assertEquals(98, meterRegistry.get("concierge.accesslog.dropped").functionCounter().count());
+
+        // And: The buffered entries are written once the writer moves on
+        appender.release.countDown();
+        accessLog.destroy();
+        assertEquals(3, appender.received.get());
+    }
+
+    @Test
+    @DisplayName("Should not queue entries of proxies sampled at zero")
+    void shouldSkipUnsampledProxies() throws Exception {
+        var accessLog = accessLog(0.0, 2);
+        appender.release.countDown();
+
+        for (int i = 0; i < 100; i++) {
+            accessLog.record("serviceA", request());
+        }
+        accessLog.destroy();
+
+        assertEquals(0, accessLog.droppedEntries());
+        assertEquals(0, appender.received.get());
+    }
+
+    private Exchange request() {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.setProperty("httpMethod", "GET");
+        exchange.setProperty("remainingPath", "/todos/1");
+        exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+        return exchange;
+    }
+
+    private ProxyAccessLog accessLog(double sampleRate, int bufferSize) {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.setAccessLogSampleRate(sampleRate);
+        var appConfig = new AppConfig();
+        appConfig.setAccessLogBufferSize(bufferSize);
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return new ProxyAccessLog(appConfig, meterRegistry);
+    }
+
+    // Counts the lines it is given, each one held until release is counted down
+    private static class HeldAppender extends AppenderBase<ILoggingEvent> {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger received = new AtomicInteger();
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            received.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
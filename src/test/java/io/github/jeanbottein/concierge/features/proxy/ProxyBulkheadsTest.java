@@ -0,0 +1,189 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the per-proxy cap on in-flight backend calls.
+ */
+class ProxyBulkheadsTest {
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should not limit proxies without a concurrency setting")
+    void shouldNotLimitUnconfiguredProxies() throws InterruptedException {
+        var bulkheads = bulkheads(0, Duration.ZERO);
+
+        for (int i = 0; i < 1000; i++) {
+            bulkheads.acquire("serviceA", request());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject with 503 once the max wait for a permit has passed")
+    void shouldRejectPastMaxWait() throws InterruptedException {
+        // Given: A proxy limited to one backend call, held by another request
+        var bulkheads = bulkheads(1, Duration.ofMillis(100));
+        bulkheads.acquire("serviceA", request());
+
+        // When: A second request asks for a permit
+        var started = System.nanoTime();
+        var rejected = assertThrows(ProxyRejectedException.class, () -> bulkheads.acquire("serviceA", request()));
+
+        // Then: It waited for the max wait, then was rejected
+        assertEquals(503, rejected.getStatus());
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    @DisplayName("Should release the permit when the exchange completes, failed or not")
+    void shouldReleasePermitOnCompletion() throws InterruptedException {
+        var bulkheads = bulkheads(1, Duration.ZERO);
+
+        for (int i = 0; i < 3; i++) {
+            var exchange = request();
+            bulkheads.acquire("serviceA", exchange);
+            if (i % 2 == 0) {
+                exchange.getExchangeExtension().handoverCompletions().forEach(completion -> completion.onComplete(exchange));
+            } else {
+                exchange.setException(new IllegalStateException("Backend unreachable"));
+                exchange.getExchangeExtension().handoverCompletions().forEach(completion -> completion.onFailure(exchange));
+            }
+        }
+
+        bulkheads.acquire("serviceA", request());
+    }
+
+    @Test
+    @DisplayName("Should hand a freed permit to a waiting request")
+    void shouldWakeWaitingRequest() throws Exception {
+        // Given: A request waiting on the only permit
+        var bulkheads = bulkheads(1, Duration.ofSeconds(5));
+        var holder = request();
+        bulkheads.acquire("serviceA", holder);
+        var waiting = CompletableFuture.runAsync(() -> {
+            try {
+                bulkheads.acquire("serviceA", request());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // When: The holder completes
+        Thread.sleep(100);
+        holder.getExchangeExtension().handoverCompletions().forEach(completion -> completion.onComplete(holder));
+
+        // Then: The waiting request gets the permit well before its max wait
+        waiting.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Should feed the adaptive limit each backend attempt, not the backoff between them")
+    void shouldSampleAttemptsNotBackoff() throws InterruptedException {
+        // Given: An adaptive limit at its maximum, busy enough for every sample to count
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getConcurrency().setAdaptive(true);
+        proxyConfig.getConcurrency().setInitialLimit(16);
+        proxyConfig.getConcurrency().setMinLimit(1);
+        proxyConfig.getConcurrency().setMaxLimit(16);
+        var bulkheads = bulkheads(proxyConfig);
+        for (int i = 0; i < 8; i++) {
+            bulkheads.acquire("serviceA", request());
+        }
+        var limit = meterRegistry.get("concierge.proxy.concurrency.limit").gauge();
+
+        // And: A backend answering in 5ms
+        for (int i = 0; i < 20; i++) {
+            call(bulkheads, 0);
+        }
+
+        // When: Requests are retried after a backoff ten times longer than the backend takes
+        for (int i = 0; i < 5; i++) {
+            call(bulkheads, 50);
+        }
+
+        // Then: The limit did not take the backoff for a slower backend
+        assertEquals(16.0, limit.value());
+    }
+
+    @Test
+    @DisplayName("Should shed by the request's priority even when the header policy drops its header")
+    void shouldKeepPriorityDroppedByHeaderPolicy() throws InterruptedException {
+        // Given: An adaptive limit of 4 with two calls in flight, on a proxy only forwarding Content-Type
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getConcurrency().setAdaptive(true);
+        proxyConfig.getConcurrency().setInitialLimit(4);
+        proxyConfig.getConcurrency().setMinLimit(4);
+        proxyConfig.getConcurrency().setMaxLimit(4);
+        proxyConfig.getHeaders().setAllow(List.of("Content-Type"));
+        var bulkheads = bulkheads(proxyConfig);
+        bulkheads.acquire("serviceA", request());
+        bulkheads.acquire("serviceA", request());
+
+        // When: A low priority request has its headers rewritten before asking for a permit
+        var low = request();
+        low.getIn().setHeader("X-Priority", "low");
+        bulkheads.capturePriority("serviceA", low);
+        HeaderPolicy.of(proxyConfig.getHeaders(), true).apply(low.getIn());
+
+        // Then: It is shed at half the limit, as a low priority request
+        assertNull(low.getIn().getHeader("X-Priority"));
+        var rejected = assertThrows(ProxyRejectedException.class, () -> bulkheads.acquire("serviceA", low));
+        assertEquals(503, rejected.getStatus());
+        assertEquals(1.0, meterRegistry.get("concierge.proxy.shed").tag("priority", "low").counter().count());
+    }
+
+    // One exchange through the backend: a 5ms attempt, and another one after the backoff if there is one
+    private void call(ProxyBulkheads bulkheads, long backoffMillis) throws InterruptedException {
+        var exchange = request();
+        bulkheads.acquire("serviceA", exchange);
+        bulkheads.attemptStarted(exchange);
+        Thread.sleep(5);
+        bulkheads.attemptCompleted(exchange);
+        if (backoffMillis > 0) {
+            Thread.sleep(backoffMillis);
+            bulkheads.attemptStarted(exchange);
+            Thread.sleep(5);
+            bulkheads.attemptCompleted(exchange);
+        }
+        exchange.getExchangeExtension().handoverCompletions().forEach(completion -> completion.onComplete(exchange));
+    }
+
+    private Exchange request() {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "GET");
+        return exchange;
+    }
+
+    private ProxyBulkheads bulkheads(int maxConcurrent, Duration maxWait) {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getConcurrency().setMaxConcurrent(maxConcurrent);
+        proxyConfig.getConcurrency().setMaxWait(maxWait);
+        return bulkheads(proxyConfig);
+    }
+
+    private ProxyBulkheads bulkheads(ProxyConfig proxyConfig) {
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return new ProxyBulkheads(appConfig, meterRegistry);
+    }
+}
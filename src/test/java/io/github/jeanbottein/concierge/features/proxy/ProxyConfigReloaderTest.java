@@ -0,0 +1,124 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.AdviceWith;
+import org.apache.camel.builder.ExchangeBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.TargetConfig;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that proxies can be added and removed at runtime without touching the others.
+ *
+ * The backend call is intercepted so the test does not depend on a running WireMock server.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ProxyConfigReloaderTest {
+
+    @Autowired
+    private CamelContext camelContext;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private ProxyConfigReloader reloader;
+
+    @AfterEach
+    void restoreConfiguration() {
+        reloader.reload(appConfig.getProxies());
+    }
+
+    @Test
+    @DisplayName("Should serve added proxies and stop serving removed ones after a reload")
+    void shouldApplyAddedAndRemovedProxies() throws Exception {
+        // Given: Backend calls answer locally instead of going over the network
+        AdviceWith.adviceWith(camelContext, ProxyRouter.INGRESS_ROUTE_ID, route -> route
+                .interceptSendToEndpoint("http*")
+                .skipSendToOriginalEndpoint()
+                .setHeader(Exchange.HTTP_RESPONSE_CODE, route.constant(200))
+                .setBody(route.constant("{}")));
+
+        // When: serviceB is removed and serviceC added
+        var proxies = new HashMap<>(appConfig.getProxies());
+        var serviceC = new ProxyConfig();
+        serviceC.setTarget(proxies.get("serviceA").getTarget());
+        proxies.remove("serviceB");
+        proxies.put("serviceC", serviceC);
+        reloader.reload(proxies);
+
+        // Then: Only the proxies of the new configuration are served
+        assertEquals(200, status("/proxy/serviceC/todos/1"));
+        assertEquals(200, status("/proxy/serviceA/todos/1"));
+        assertEquals(404, status("/proxy/serviceB/todos/1"));
+    }
+
+    @Test
+    @DisplayName("Should remove every backend endpoint of a replaced proxy once it has drained")
+    void shouldRemoveTargetEndpointsOfReplacedProxy() throws Exception {
+        // Given: A proxy balanced over two targets, each with its own backend endpoint
+        var proxies = new HashMap<>(appConfig.getProxies());
+        var target = proxies.get("serviceA").getTarget();
+        var serviceC = new ProxyConfig();
+        serviceC.setTargets(List.of(target(target), target(target + "/replica")));
+        proxies.put("serviceC", serviceC);
+        reloader.reload(proxies);
+        var replaced = serviceCEndpoints();
+        assertEquals(2, replaced.size());
+
+        // When: Its connection pool changes, which gives it new endpoints
+        var changed = new ProxyConfig();
+        changed.setTargets(serviceC.getTargets());
+        changed.getConnectionPool().setMaxTotal(50);
+        proxies.put("serviceC", changed);
+        reloader.reload(proxies);
+
+        // Then: Once drained, none of the previous endpoints is left in the context
+        for (int i = 0; i < 50 && serviceCEndpoints().stream().anyMatch(replaced::contains); i++) {
+            Thread.sleep(100);
+        }
+        var current = serviceCEndpoints();
+        assertEquals(2, current.size());
+        assertTrue(current.stream().noneMatch(replaced::contains));
+    }
+
+    private Set<String> serviceCEndpoints() {
+        return camelContext.getEndpoints().stream()
+                .map(Endpoint::getEndpointUri)
+                .filter(uri -> uri.contains("proxyPool-serviceC-"))
+                .collect(Collectors.toSet());
+    }
+
+    private static TargetConfig target(String url) {
+        var target = new TargetConfig();
+        target.setUrl(url);
+        return target;
+    }
+
+    private int status(String requestUri) throws Exception {
+        var exchange = ExchangeBuilder.anExchange(camelContext)
+                .withHeader(Exchange.HTTP_METHOD, "GET")
+                .withHeader(Exchange.HTTP_URI, requestUri)
+                .build();
+        camelContext.getRoute(ProxyRouter.INGRESS_ROUTE_ID).getConsumer().getProcessor().process(exchange);
+        return exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+    }
+}
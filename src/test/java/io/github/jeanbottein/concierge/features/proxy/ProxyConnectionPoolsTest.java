@@ -0,0 +1,110 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for the per-proxy connection pools and their replacement on reload.
+ */
+class ProxyConnectionPoolsTest {
+
+    private static final Pattern BEAN = Pattern.compile("#([^&]+)");
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+    @Test
+    @DisplayName("Should bind a distinct pool for each proxy")
+    void shouldBindPoolPerProxy() {
+        var appConfig = appConfig();
+        appConfig.getProxies().put("serviceB", new ProxyConfig());
+        var pools = new ProxyConnectionPools(appConfig);
+
+        var serviceA = manager(pools.endpointOptions(camelContext, "serviceA"));
+        var serviceB = manager(pools.endpointOptions(camelContext, "serviceB"));
+
+        assertNotNull(serviceA);
+        assertNotNull(serviceB);
+        assertNotSame(serviceA, serviceB);
+        assertEquals(20, serviceA.getDefaultMaxPerRoute());
+        assertEquals("", pools.endpointOptions(camelContext, "unknown"));
+    }
+
+    @Test
+    @DisplayName("Should keep a pool whose settings did not change across a reload")
+    void shouldKeepUnchangedPool() {
+        var appConfig = appConfig();
+        var pools = new ProxyConnectionPools(appConfig);
+        var before = pools.endpointOptions(camelContext, "serviceA");
+
+        var closeRetired = pools.reload(new HashMap<>(appConfig.getProxies()));
+        closeRetired.run();
+
+        var after = pools.endpointOptions(camelContext, "serviceA");
+        assertEquals(before, after);
+        assertSame(manager(before), manager(after));
+    }
+
+    @Test
+    @DisplayName("Should replace a changed pool, then unbind and close the old one once drained")
+    void shouldReplaceChangedPool() {
+        // Given: serviceA's pool bound into the registry by its route
+        var pools = new ProxyConnectionPools(appConfig());
+        var oldOptions = pools.endpointOptions(camelContext, "serviceA");
+        var oldManager = manager(oldOptions);
+
+        // When: Its pool settings change
+        var changed = new ProxyConfig();
+        changed.getConnectionPool().setMaxPerRoute(5);
+        var proxies = new HashMap<String, ProxyConfig>();
+        proxies.put("serviceA", changed);
+        var closeRetired = pools.reload(proxies);
+        var newOptions = pools.endpointOptions(camelContext, "serviceA");
+
+        // Then: New routes get a new pool, while the old one still serves in-flight exchanges
+        assertNotEquals(oldOptions, newOptions);
+        assertEquals(5, manager(newOptions).getDefaultMaxPerRoute());
+        assertSame(oldManager, manager(oldOptions));
+
+        // And: Once they have drained, the old pool is unbound and closed
+        closeRetired.run();
+        beans(oldOptions).forEach(bean -> assertNull(camelContext.getRegistry().lookupByName(bean)));
+        assertThrows(IllegalStateException.class, () ->
+            oldManager.lease("test", new HttpRoute(new HttpHost("localhost", 8080)), Timeout.ofSeconds(1), null));
+        assertNotNull(manager(newOptions));
+    }
+
+    private PoolingHttpClientConnectionManager manager(String endpointOptions) {
+        return (PoolingHttpClientConnectionManager) camelContext.getRegistry().lookupByName(beans(endpointOptions).get(0));
+    }
+
+    // Registry bean names referenced by the endpoint options, the connection manager first
+    private static List<String> beans(String endpointOptions) {
+        return BEAN.matcher(endpointOptions).results().map(match -> match.group(1)).toList();
+    }
+
+    private static AppConfig appConfig() {
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", new ProxyConfig());
+        return appConfig;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.AdviceWith;
+import org.apache.camel.builder.ExchangeBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Regression test for endpoint churn in the proxy routes.
+ * Every distinct request URL used to resolve a new HTTP endpoint and producer; the backend
+ * endpoint must now be resolved once per proxy no matter how many distinct URLs go through it.
+ *
+ * The backend call is intercepted so the test measures endpoint resolution only and does
+ * not depend on a running WireMock server.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ProxyEndpointCardinalityTest {
+
+    private static final int DISTINCT_URLS = 100_000;
+
+    @Autowired
+    private CamelContext camelContext;
+
+    @Test
+    @DisplayName("Should keep the endpoint count constant after 100k distinct URLs")
+    void shouldNotCreateEndpointPerDistinctUrl() throws Exception {
+        // Given: The serviceB backend call answers locally instead of going over the network
+        AdviceWith.adviceWith(camelContext, ProxyRouter.INGRESS_ROUTE_ID, route -> route
+                .interceptSendToEndpoint("http*")
+                .skipSendToOriginalEndpoint()
+                .setHeader(Exchange.HTTP_RESPONSE_CODE, route.constant(200))
+                .setBody(route.constant("{}")));
+        var processor = camelContext.getRoute(ProxyRouter.INGRESS_ROUTE_ID).getConsumer().getProcessor();
+
+        // And: One request has gone through so everything lazily created already exists
+        processor.process(proxyRequest(0));
+        var endpointsBefore = camelContext.getEndpoints().size();
+
+        // When: Many requests with distinct paths and queries go through the route
+        for (int i = 1; i <= DISTINCT_URLS; i++) {
+            processor.process(proxyRequest(i));
+        }
+
+        // Then: No endpoint was created for any of them
+        assertEquals(endpointsBefore, camelContext.getEndpoints().size(),
+                "Endpoint count should not grow with the number of distinct URLs");
+    }
+
+    private Exchange proxyRequest(int i) {
+        return ExchangeBuilder.anExchange(camelContext)
+                .withHeader(Exchange.HTTP_METHOD, "GET")
+                .withHeader(Exchange.HTTP_URI, "/proxy/serviceB/todos/" + i)
+                .withHeader(Exchange.HTTP_RAW_QUERY, "userId=" + i)
+                .build();
+    }
+}
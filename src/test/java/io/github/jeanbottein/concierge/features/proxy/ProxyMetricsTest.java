@@ -0,0 +1,74 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the proxy meters and the number of tag combinations they can reach.
+ */
+class ProxyMetricsTest {
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+    @Test
+    @DisplayName("Should tag unknown methods as OTHER so clients cannot create meters")
+    void shouldBoundMethodTags() {
+        // Given a proxy receiving requests with made-up methods
+        var meterRegistry = new SimpleMeterRegistry();
+        var metrics = new ProxyMetrics(appConfig(), meterRegistry);
+
+        // When a thousand distinct methods go through it
+        for (int i = 0; i < 1000; i++) {
+            complete(metrics, "METHOD" + i, 200);
+        }
+        complete(metrics, "GET", 200);
+
+        // Then they all share a single OTHER timer
+        var timers = meterRegistry.find("concierge.proxy.requests").timers();
+        assertEquals(2, timers.size());
+        var other = meterRegistry.find("concierge.proxy.requests").tag("method", "OTHER").timer();
+        assertNotNull(other);
+        assertEquals(1000, other.count());
+    }
+
+    @Test
+    @DisplayName("Should remove the meters of proxies dropped by a reload")
+    void shouldRemoveMetersOfDroppedProxies() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var metrics = new ProxyMetrics(appConfig(), meterRegistry);
+        complete(metrics, "GET", 200);
+
+        metrics.reload(Map.of());
+
+        assertTrue(meterRegistry.find("concierge.proxy.requests").meters().isEmpty());
+        assertTrue(meterRegistry.find("concierge.proxy.inflight").meters().isEmpty());
+        assertTrue(meterRegistry.find("concierge.proxy.request.bytes").meters().isEmpty());
+    }
+
+    private void complete(ProxyMetrics metrics, String method, int status) {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.setProperty("httpMethod", method);
+        metrics.start("serviceA", exchange);
+        exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, status);
+        exchange.getExchangeExtension().handoverCompletions().forEach(completion -> completion.onComplete(exchange));
+    }
+
+    private static AppConfig appConfig() {
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", new ProxyConfig());
+        return appConfig;
+    }
+}
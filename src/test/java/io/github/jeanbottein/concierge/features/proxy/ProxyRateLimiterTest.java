@@ -0,0 +1,72 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.proxy.ProxyRateLimiter.TokenBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the per-proxy and per-client token buckets.
+ */
+class ProxyRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("Should allow the burst at once, then one request per interval")
+    void shouldRefillAtTheConfiguredRate() {
+        var bucket = new TokenBucket(10, 3, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND / 10, bucket.tryAcquire(0));
+
+        assertEquals(0, bucket.tryAcquire(SECOND / 10));
+        assertTrue(bucket.tryAcquire(SECOND / 10) > 0);
+    }
+
+    @Test
+    @DisplayName("Should reject clients over their own limit with 429 and Retry-After")
+    void shouldLimitEachClient() {
+        var registry = new SimpleMeterRegistry();
+        var limiter = new ProxyRateLimiter(appConfig(), registry);
+
+        limiter.acquire("serviceA", exchange("key-1"));
+        var rejection = assertThrows(ProxyRejectedException.class, () -> limiter.acquire("serviceA", exchange("key-1")));
+        assertDoesNotThrow(() -> limiter.acquire("serviceA", exchange("key-2")));
+
+        assertEquals(429, rejection.getStatus());
+        assertEquals(Duration.ofSeconds(1), rejection.getRetryAfter());
+        assertEquals(1, registry.get("concierge.proxy.rate.limited").tag("scope", "client").counter().count());
+    }
+
+    private static AppConfig appConfig() {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getRateLimit().setClientRequestsPerSecond(1);
+        proxyConfig.getRateLimit().setClientKeyHeader("X-Api-Key");
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return appConfig;
+    }
+
+    private static Exchange exchange(String apiKey) {
+        var exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader("X-Api-Key", apiKey);
+        return exchange;
+    }
+}
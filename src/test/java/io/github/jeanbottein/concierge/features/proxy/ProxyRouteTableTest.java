@@ -0,0 +1,67 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for resolving proxies from request URIs on the ingress route.
+ */
+class ProxyRouteTableTest {
+
+    private static final ProxyRoute SERVICE_A = route("serviceA");
+    private static final ProxyRoute SERVICE_AB = route("serviceAB");
+
+    private final ProxyRouteTable routeTable = new ProxyRouteTable(List.of(SERVICE_A, SERVICE_AB));
+
+    @Test
+    @DisplayName("Should resolve the proxy named by the first path segment")
+    void shouldResolveByFirstSegment() {
+        assertSame(SERVICE_A, routeTable.resolve("/proxy/serviceA/todos/1"));
+        assertSame(SERVICE_AB, routeTable.resolve("/proxy/serviceAB/todos/1"));
+        assertSame(SERVICE_A, routeTable.resolve("/proxy/serviceA"));
+    }
+
+    @Test
+    @DisplayName("Should not resolve unknown proxies or paths outside /proxy/")
+    void shouldNotResolveUnknownProxies() {
+        assertNull(routeTable.resolve("/proxy/serviceC/todos/1"));
+        assertNull(routeTable.resolve("/proxy/service/todos/1"));
+        assertNull(routeTable.resolve("/other/serviceA/todos/1"));
+        assertNull(routeTable.resolve(null));
+    }
+
+    @Test
+    @DisplayName("Should strip the proxy prefix from the request path")
+    void shouldStripProxyPrefix() {
+        assertEquals("/todos/1", ProxyRouteTable.remainingPath("/proxy/serviceA/todos/1", SERVICE_A));
+        assertEquals("/", ProxyRouteTable.remainingPath("/proxy/serviceA", SERVICE_A));
+        assertEquals("/", ProxyRouteTable.remainingPath("/proxy/serviceA/", SERVICE_A));
+    }
+
+    @Test
+    @DisplayName("Should resolve every proxy of a large table")
+    void shouldResolveLargeTables() {
+        var routes = IntStream.range(0, 2000).mapToObj(i -> route("service" + i)).toList();
+        var largeTable = new ProxyRouteTable(routes);
+
+        routes.forEach(proxyRoute -> assertSame(proxyRoute, largeTable.resolve("/proxy/" + proxyRoute.name() + "/x")));
+    }
+
+    @Test
+    @DisplayName("Should reject duplicate proxy names")
+    void shouldRejectDuplicates() {
+        assertThrows(IllegalArgumentException.class, () -> new ProxyRouteTable(List.of(SERVICE_A, route("serviceA"))));
+    }
+
+    private static ProxyRoute route(String name) {
+        return new ProxyRoute(name, "http://localhost:8090", "http://localhost:8090?bridgeEndpoint=true", false, null);
+    }
+}
@@ -133,6 +133,24 @@ class ProxyRouterTest {
         assertTrue(responseBody.contains("\"name\":"), "Response should contain a name field");
         assertTrue(responseBody.contains("\"email\":"), "Response should contain an email field");
     }
-    
 
+    @Test
+    @DisplayName("Should serve repeated GET requests from the proxy cache")
+    public void shouldServeRepeatedRequestFromCache() {
+        // Given: A first call populates the serviceA cache region
+        ResponseEntity<String> firstResponse = restTemplate.getForEntity(
+                "/proxy/serviceA/users/42", 
+                String.class);
+        assertEquals(HttpStatus.OK, firstResponse.getStatusCode(), "First proxy call should return 200 OK");
+        
+        // When: The same resource is requested again within the TTL
+        ResponseEntity<String> secondResponse = restTemplate.getForEntity(
+                "/proxy/serviceA/users/42", 
+                String.class);
+        
+        // Then: It is answered from the cache with the same body
+        assertEquals(HttpStatus.OK, secondResponse.getStatusCode(), "Cached call should return 200 OK");
+        assertEquals("HIT", secondResponse.getHeaders().getFirst("X-Cache"), "Second call should be a cache hit");
+        assertEquals(firstResponse.getBody(), secondResponse.getBody(), "Cached body should match the backend body");
+    }
 }
@@ -0,0 +1,111 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.StreamCache;
+import org.apache.camel.builder.AdviceWith;
+import org.apache.camel.builder.ExchangeBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Checks through the ingress route that a streaming proxy hands the request body to the backend
+ * as the stream it came in as, where other proxies buffer it.
+ *
+ * The backend call is intercepted once for the class and only records the body it is given. The
+ * context is a fresh one so no interceptor advised by another test sees the body first.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DirtiesContext(classMode = ClassMode.BEFORE_CLASS)
+@TestInstance(Lifecycle.PER_CLASS)
+class ProxyStreamingRouteTest {
+
+    @Autowired
+    private CamelContext camelContext;
+
+    @Autowired
+    private AppConfig appConfig;
+
+    @Autowired
+    private ProxyConfigReloader reloader;
+
+    private final AtomicReference<Object> backendBody = new AtomicReference<>();
+
+    @BeforeAll
+    void interceptBackend() throws Exception {
+        AdviceWith.adviceWith(camelContext, ProxyRouter.INGRESS_ROUTE_ID, route -> route
+                .interceptSendToEndpoint("http*")
+                .skipSendToOriginalEndpoint()
+                .process(exchange -> backendBody.set(exchange.getIn().getBody()))
+                .setHeader(Exchange.HTTP_RESPONSE_CODE, route.constant(200))
+                .setBody(route.constant("{}")));
+    }
+
+    @AfterEach
+    void restoreConfiguration() {
+        backendBody.set(null);
+        reloader.reload(appConfig.getProxies());
+    }
+
+    @Test
+    @DisplayName("Should pass the request body of a streaming proxy to the backend unbuffered")
+    void shouldStreamRequestBodyToBackend() throws Exception {
+        // Given: A streaming proxy next to the buffered ones
+        var proxies = new HashMap<>(appConfig.getProxies());
+        var serviceC = new ProxyConfig();
+        serviceC.setTarget(proxies.get("serviceA").getTarget());
+        serviceC.setStreaming(true);
+        proxies.put("serviceC", serviceC);
+        reloader.reload(proxies);
+
+        // When: A body goes through the streaming proxy
+        var exchange = upload("/proxy/serviceC/uploads");
+
+        // Then: The backend is handed the request stream, neither cached nor read into memory
+        assertEquals(200, exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class));
+        assertInstanceOf(InputStream.class, backendBody.get());
+        assertFalse(backendBody.get() instanceof StreamCache);
+    }
+
+    @Test
+    @DisplayName("Should buffer the request body of a non-streaming proxy before the backend call")
+    void shouldBufferRequestBodyOfOtherProxies() throws Exception {
+        upload("/proxy/serviceB/uploads");
+
+        assertInstanceOf(byte[].class, backendBody.get());
+    }
+
+    private Exchange upload(String requestUri) throws Exception {
+        var exchange = ExchangeBuilder.anExchange(camelContext)
+                .withHeader(Exchange.HTTP_METHOD, "POST")
+                .withHeader(Exchange.HTTP_URI, requestUri)
+                .withHeader(Exchange.CONTENT_TYPE, "application/octet-stream")
+                .withBody(new ByteArrayInputStream("chunk".repeat(1024).getBytes(StandardCharsets.UTF_8)))
+                .build();
+        camelContext.getRoute(ProxyRouter.INGRESS_ROUTE_ID).getConsumer().getProcessor().process(exchange);
+        return exchange;
+    }
+}
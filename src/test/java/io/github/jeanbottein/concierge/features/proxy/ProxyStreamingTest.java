@@ -0,0 +1,95 @@
+package io.github.jeanbottein.concierge.features.proxy;
+
+import java.io.IOException;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.caching.RedisResponseStore;
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+import io.github.jeanbottein.concierge.features.resilience.BackendResilience;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the streaming mode of a proxy, which pipes bodies instead of buffering them
+ * and so gives up everything that needs the whole body.
+ */
+class ProxyStreamingTest {
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+
+    @Test
+    @DisplayName("Should keep the backend response a raw stream only on streaming proxies")
+    void shouldDisableStreamCacheOnStreamingProxies() {
+        var buffered = proxyConfig(false);
+        var streaming = proxyConfig(true);
+
+        assertFalse(ProxyRouter.backendEndpointUri(buffered).contains("disableStreamCache"));
+        assertTrue(ProxyRouter.backendEndpointUri(streaming).contains("&disableStreamCache=true"));
+        assertTrue(ProxyRouter.backendEndpointUri(streaming, "http://localhost:8082").contains("&disableStreamCache=true"));
+    }
+
+    @Test
+    @DisplayName("Should ignore caching on streaming proxies")
+    void shouldNotCacheStreamingProxies() {
+        // Given: A streaming proxy that also asks for caching
+        var proxyConfig = proxyConfig(true);
+        proxyConfig.getCaching().setEnabled(true);
+        var connectionFactories = new StaticListableBeanFactory().getBeanProvider(RedisConnectionFactory.class);
+        var appConfig = appConfig(proxyConfig);
+        var responseCache = new ResponseCache(appConfig, new SimpleMeterRegistry(),
+            new RedisResponseStore(appConfig, connectionFactories));
+
+        // When: A cacheable request goes through the lookup
+        var exchange = request("GET");
+        responseCache.lookup("serviceA", exchange);
+
+        // Then: It is not given a cache key, so its response is never stored
+        assertFalse(exchange.getProperty(ResponseCache.CACHE_HIT, Boolean.class));
+        assertNull(exchange.getProperty(ResponseCache.CACHE_KEY));
+    }
+
+    @Test
+    @DisplayName("Should never retry a streamed request, its body cannot be replayed")
+    void shouldNotRetryStreamingProxies() {
+        var proxyConfig = proxyConfig(true);
+        proxyConfig.getResilience().setEnabled(true);
+        var resilience = new BackendResilience(appConfig(proxyConfig), new SimpleMeterRegistry());
+        var exchange = request("PUT");
+        resilience.tryAcquirePermission("serviceA", exchange);
+        exchange.setProperty(Exchange.EXCEPTION_CAUGHT, new IOException("Connection reset"));
+
+        assertFalse(resilience.shouldRetry("serviceA", exchange));
+    }
+
+    private Exchange request(String method) {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, method);
+        exchange.setProperty("remainingPath", "/todos/1");
+        return exchange;
+    }
+
+    private static ProxyConfig proxyConfig(boolean streaming) {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.setTarget("http://localhost:8081");
+        proxyConfig.setStreaming(streaming);
+        return proxyConfig;
+    }
+
+    private static AppConfig appConfig(ProxyConfig proxyConfig) {
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return appConfig;
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.jeanbottein.concierge.features.resilience;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.http.base.HttpOperationFailedException;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the per-proxy circuit breaker and the retry decision around the backend call.
+ */
+class BackendResilienceTest {
+
+    private final DefaultCamelContext camelContext = new DefaultCamelContext();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should retry idempotent methods on I/O errors and 5xx")
+    void shouldRetryIdempotentMethods() {
+        var resilience = resilience(new ProxyConfig());
+
+        for (var method : new String[] {"GET", "HEAD", "OPTIONS", "PUT", "DELETE"}) {
+            assertTrue(resilience.shouldRetry("serviceA", failed(method, new IOException("Connection reset"))), method);
+            assertTrue(resilience.shouldRetry("serviceA", failed(method, status(503))), method);
+        }
+    }
+
+    @Test
+    @DisplayName("Should not retry non-idempotent methods, 4xx or other errors")
+    void shouldNotRetryOtherFailures() {
+        var resilience = resilience(new ProxyConfig());
+
+        assertFalse(resilience.shouldRetry("serviceA", failed("POST", new IOException("Connection reset"))));
+        assertFalse(resilience.shouldRetry("serviceA", failed("PATCH", status(502))));
+        assertFalse(resilience.shouldRetry("serviceA", failed("GET", status(404))));
+        assertFalse(resilience.shouldRetry("serviceA", failed("GET", status(429))));
+        assertFalse(resilience.shouldRetry("serviceA", failed("GET", new IllegalStateException("Bad response"))));
+    }
+
+    @Test
+    @DisplayName("Should stop retrying once max attempts are used")
+    void shouldStopAtMaxAttempts() {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getResilience().setMaxAttempts(3);
+        var resilience = resilience(proxyConfig);
+
+        assertTrue(resilience.shouldRetry("serviceA", redelivered(1)));
+        assertFalse(resilience.shouldRetry("serviceA", redelivered(2)));
+    }
+
+    @Test
+    @DisplayName("Should open the circuit after failures and reject calls and retries")
+    void shouldOpenCircuitAndReject() {
+        // Given: A breaker judging the last two calls
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getResilience().setSlidingWindowSize(2);
+        proxyConfig.getResilience().setMinimumNumberOfCalls(2);
+        var resilience = resilience(proxyConfig);
+
+        // When: Both fail, one unreachable and one with a server error
+        var unreachable = request("GET");
+        assertTrue(resilience.tryAcquirePermission("serviceA", unreachable));
+        unreachable.setProperty(Exchange.EXCEPTION_CAUGHT, new IOException("Connection refused"));
+        resilience.recordFailure("serviceA", unreachable);
+        var serverError = request("GET");
+        assertTrue(resilience.tryAcquirePermission("serviceA", serverError));
+        serverError.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 500);
+        resilience.recordSuccess("serviceA", serverError);
+
+        // Then: The circuit is open, so calls fail fast and nothing is retried
+        assertFalse(resilience.tryAcquirePermission("serviceA", request("GET")));
+        assertFalse(resilience.shouldRetry("serviceA", failed("GET", new IOException("Connection refused"))));
+        assertEquals(1.0, meterRegistry.get("concierge.proxy.circuitbreaker.state").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should hand back the permit of a call that ended in an error that is not the backend's")
+    void shouldReleasePermitWithoutOutcome() throws Exception {
+        // Given: A breaker gone half-open after failures, allowing a single trial call
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getResilience().setSlidingWindowSize(2);
+        proxyConfig.getResilience().setMinimumNumberOfCalls(2);
+        proxyConfig.getResilience().setOpenStateDuration(Duration.ofMillis(50));
+        proxyConfig.getResilience().setHalfOpenCalls(1);
+        var resilience = resilience(proxyConfig);
+        for (int i = 0; i < 2; i++) {
+            var failed = request("GET");
+            resilience.tryAcquirePermission("serviceA", failed);
+            failed.setProperty(Exchange.EXCEPTION_CAUGHT, new IOException("Connection refused"));
+            resilience.recordFailure("serviceA", failed);
+        }
+        Thread.sleep(100);
+
+        // When: The trial call fails inside the proxy, before any outcome is recorded
+        camelContext.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:call")
+                    .process(exchange -> resilience.tryAcquirePermission("serviceA", exchange))
+                    .process(exchange -> {
+                        throw new IllegalStateException("Backend call failed outside of Camel");
+                    });
+            }
+        });
+        camelContext.start();
+        try {
+            var call = camelContext.createProducerTemplate().send("direct:call", request("GET"));
+            assertInstanceOf(IllegalStateException.class, call.getException());
+
+            // Then: Its permit is back, so the breaker can still try the backend
+            assertTrue(resilience.tryAcquirePermission("serviceA", request("GET")));
+        } finally {
+            camelContext.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Should not hold client errors against the backend")
+    void shouldIgnoreClientErrors() {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getResilience().setSlidingWindowSize(2);
+        proxyConfig.getResilience().setMinimumNumberOfCalls(2);
+        var resilience = resilience(proxyConfig);
+
+        for (int i = 0; i < 5; i++) {
+            var exchange = request("GET");
+            resilience.tryAcquirePermission("serviceA", exchange);
+            exchange.setProperty(Exchange.EXCEPTION_CAUGHT, status(404));
+            resilience.recordFailure("serviceA", exchange);
+        }
+
+        assertTrue(resilience.tryAcquirePermission("serviceA", request("GET")));
+    }
+
+    @Test
+    @DisplayName("Should let every call through on proxies without resilience")
+    void shouldPassThroughWhenDisabled() {
+        var resilience = new BackendResilience(appConfig(new ProxyConfig()), meterRegistry);
+
+        assertFalse(resilience.isEnabled("serviceA"));
+        assertTrue(resilience.tryAcquirePermission("serviceA", request("GET")));
+        assertFalse(resilience.shouldRetry("serviceA", failed("GET", new IOException("Connection reset"))));
+    }
+
+    private BackendResilience resilience(ProxyConfig proxyConfig) {
+        proxyConfig.getResilience().setEnabled(true);
+        return new BackendResilience(appConfig(proxyConfig), meterRegistry);
+    }
+
+    private Exchange failed(String method, Exception cause) {
+        var exchange = request(method);
+        exchange.setProperty(Exchange.EXCEPTION_CAUGHT, cause);
+        return exchange;
+    }
+
+    // A GET that failed with an I/O error after that many redeliveries
+    private Exchange redelivered(int redeliveries) {
+        var exchange = failed("GET", new IOException("Connection reset"));
+        exchange.getIn().setHeader(Exchange.REDELIVERY_COUNTER, redeliveries);
+        return exchange;
+    }
+
+    private Exchange request(String method) {
+        var exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, method);
+        return exchange;
+    }
+
+    private static HttpOperationFailedException status(int status) {
+        return new HttpOperationFailedException("http://localhost:8081/todos/1", status, "Status " + status, null, Map.of(), "");
+    }
+
+    private static AppConfig appConfig(ProxyConfig proxyConfig) {
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return appConfig;
+    }
+}
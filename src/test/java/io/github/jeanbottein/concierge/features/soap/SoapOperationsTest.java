@@ -0,0 +1,123 @@
+package io.github.jeanbottein.concierge.features.soap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.github.jeanbottein.concierge.app.config.AppConfig;
+import io.github.jeanbottein.concierge.app.config.AppConfig.ProxyConfig;
+import io.github.jeanbottein.concierge.features.caching.ResponseCache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for reading the operation and cache key of SOAP requests.
+ */
+class SoapOperationsTest {
+
+    private static final String ENVELOPE =
+        "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:web=\"http://example.org/webservice\">" +
+        "<soapenv:Header><web:productId>ignored</web:productId></soapenv:Header>" +
+        "<soapenv:Body>" +
+        "<web:GetProductRequest>" +
+        "<web:options><web:locale>fr</web:locale></web:options>" +
+        "<web:productId> 12345 </web:productId>" +
+        "</web:GetProductRequest>" +
+        "</soapenv:Body>" +
+        "</soapenv:Envelope>";
+
+    private static final String BODY_ONLY_ENVELOPE = ENVELOPE.replaceFirst("<soapenv:Header>.*</soapenv:Header>", "");
+
+    @Test
+    @DisplayName("Should read the operation and key elements from the Body only")
+    void shouldReadOperationAndKeys() {
+        var envelope = SoapEnvelopeReader.read(ENVELOPE.getBytes(StandardCharsets.UTF_8), List.of("productId", "locale"), List.of());
+
+        assertEquals("GetProductRequest", envelope.operation());
+        assertEquals("12345", envelope.keys().get("productId"));
+        assertEquals("fr", envelope.keys().get("locale"));
+        assertTrue(envelope.header());
+        assertFalse(SoapEnvelopeReader.read(BODY_ONLY_ENVELOPE.getBytes(StandardCharsets.UTF_8), List.of(), List.of()).header());
+    }
+
+    @Test
+    @DisplayName("Should not take a plain XML document for an envelope")
+    void shouldRejectNonEnvelopes() {
+        assertNull(SoapEnvelopeReader.read("<order><id>1</id></order>".getBytes(StandardCharsets.UTF_8), List.of("id"), List.of()));
+        assertNull(SoapEnvelopeReader.read("not xml".getBytes(StandardCharsets.UTF_8), List.of(), List.of()));
+    }
+
+    @Test
+    @DisplayName("Should give cacheable operations a key built from their key elements")
+    void shouldKeyCacheableOperations() {
+        var soapOperations = soapOperations(List.of());
+        var exchange = request(BODY_ONLY_ENVELOPE);
+
+        assertEquals("GetProductRequest", soapOperations.inspect("serviceA", exchange));
+        assertEquals("SOAP /soap/products#GetProductRequest?productId=12345",
+            exchange.getProperty(ResponseCache.READ_ONLY_KEY));
+    }
+
+    @Test
+    @DisplayName("Should not cache envelopes with a Header unless the proxy keys on header elements")
+    void shouldBypassCacheForHeaders() {
+        var exchange = request(ENVELOPE);
+
+        assertEquals("GetProductRequest", soapOperations(List.of()).inspect("serviceA", exchange));
+        assertNull(exchange.getProperty(ResponseCache.READ_ONLY_KEY));
+    }
+
+    @Test
+    @DisplayName("Should give each security token its own key")
+    void shouldKeyOnHeaderElements() {
+        var soapOperations = soapOperations(List.of("BinarySecurityToken"));
+        var alice = request(ENVELOPE.replace("<web:productId>ignored</web:productId>",
+            "<wsse:BinarySecurityToken xmlns:wsse=\"urn:wsse\">alice-token</wsse:BinarySecurityToken>"));
+        var bob = request(ENVELOPE.replace("<web:productId>ignored</web:productId>",
+            "<wsse:BinarySecurityToken xmlns:wsse=\"urn:wsse\">bob-token</wsse:BinarySecurityToken>"));
+
+        soapOperations.inspect("serviceA", alice);
+        soapOperations.inspect("serviceA", bob);
+
+        var aliceKey = alice.getProperty(ResponseCache.READ_ONLY_KEY, String.class);
+        assertTrue(aliceKey.startsWith("SOAP /soap/products#GetProductRequest?productId=12345 BinarySecurityToken="));
+        assertFalse(aliceKey.contains("alice-token"));
+        assertNotEquals(aliceKey, bob.getProperty(ResponseCache.READ_ONLY_KEY));
+    }
+
+    @Test
+    @DisplayName("Should fall back to the last segment of SOAPAction")
+    void shouldReadOperationFromSoapAction() {
+        assertEquals("GetProduct", SoapOperations.actionOperation("\"http://example.org/webservice/GetProduct\""));
+        assertEquals("GetProduct", SoapOperations.actionOperation("urn:products#GetProduct"));
+        assertNull(SoapOperations.actionOperation("\"\""));
+    }
+
+    private static SoapOperations soapOperations(List<String> headerKeyElements) {
+        var proxyConfig = new ProxyConfig();
+        proxyConfig.getSoap().setEnabled(true);
+        proxyConfig.getSoap().setCacheableOperations(List.of("GetProductRequest"));
+        proxyConfig.getSoap().setKeyElements(List.of("productId"));
+        proxyConfig.getSoap().setHeaderKeyElements(headerKeyElements);
+        var appConfig = new AppConfig();
+        appConfig.getProxies().put("serviceA", proxyConfig);
+        return new SoapOperations(appConfig);
+    }
+
+    private static Exchange request(String envelope) {
+        var exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, "POST");
+        exchange.getIn().setBody(envelope.getBytes(StandardCharsets.UTF_8));
+        exchange.setProperty("remainingPath", "/soap/products");
+        return exchange;
+    }
+}
@@ -0,0 +1,69 @@
+#!/bin/bash
+
+# Colors for output
+GREEN='\033[0;32m'
+RED='\033[0;31m'
+NC='\033[0m' # No Color
+
+# Compares startup time and memory of the JVM and native builds with the same proxy configuration.
+# Startup is measured until /actuator/health answers UP, RSS is read once ready and again after
+# a burst of proxied requests. The native build needs a GraalVM JDK.
+#
+# Usage: ./startup-benchmark.sh [runs] [requests]
+
+RUNS=${1:-5}
+REQUESTS=${2:-200}
+PORT=8081
+JAR=build/libs/concierge-0.0.1-SNAPSHOT.jar
+NATIVE=build/native/nativeCompile/concierge
+URL="http://localhost:$PORT/proxy/serviceA/todos/1"
+
+echo "Building JVM and native executables..."
+./gradlew bootJar nativeCompile -q || { echo -e "${RED}Build failed${NC}"; exit 1; }
+
+rss_kb() {
+    ps -o rss= -p "$1" | tr -d ' '
+}
+
+# Starts the given command, prints "<startup ms> <ready RSS kB> <loaded RSS kB>"
+measure() {
+    local start=$(date +%s%N)
+    "$@" --server.port=$PORT > startup-benchmark.log 2>&1 &
+    local pid=$!
+
+    until curl -sf "http://localhost:$PORT/actuator/health" | grep -q UP; do
+        if ! kill -0 $pid 2>/dev/null; then
+            echo -e "${RED}Process exited before becoming ready, see startup-benchmark.log${NC}" >&2
+            exit 1
+        fi
+        sleep 0.01
+    done
+    local ready=$(( ($(date +%s%N) - start) / 1000000 ))
+    local ready_rss=$(rss_kb $pid)
+
+    for ((i = 0; i < REQUESTS; i++)); do
+        curl -s -o /dev/null "$URL"
+    done
+    local loaded_rss=$(rss_kb $pid)
+
+    kill $pid
+    wait $pid 2>/dev/null
+    echo "$ready $ready_rss $loaded_rss"
+}
+
+report() {
+    local name=$1
+    shift
+    local total_ms=0 total_ready=0 total_loaded=0
+    for ((run = 1; run <= RUNS; run++)); do
+        read ms ready loaded < <(measure "$@")
+        echo "  $name run $run: ${ms}ms, RSS ${ready}kB ready, ${loaded}kB after $REQUESTS requests"
+        total_ms=$((total_ms + ms))
+        total_ready=$((total_ready + ready))
+        total_loaded=$((total_loaded + loaded))
+    done
+    echo -e "${GREEN}$name: startup $((total_ms / RUNS))ms, RSS $((total_ready / RUNS / 1024))MB ready, $((total_loaded / RUNS / 1024))MB loaded${NC}"
+}
+
+report "JVM   " java -jar "$JAR"
+report "Native" "$NATIVE"